@@ -0,0 +1,101 @@
+package detector.bench;
+
+import detector.OpenCv;
+import detector.Yolo;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.dnn.Dnn;
+import org.opencv.dnn.Net;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Пакетный инференс на CPU: blobFromImages + forward для batch кадров.
+// forwardThroughput показывает число кадров в секунду, forwardLatency - распределение
+// времени обработки пакета (перцентили выводит режим SampleTime).
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class BatchForwardBenchmark {
+    static {
+        OpenCv.load();
+    }
+
+    @Param({"yolov4"})
+    public String model;
+
+    @Param({"416"})
+    public int size;
+
+    @Param({"1", "2", "4", "8"})
+    public int batch;
+
+    private Net network;
+    private List<Mat> images;
+    private List<String> outputLayersNames;
+    private final List<Mat> outputs = new ArrayList<>();
+
+    // Счётчик кадров для режима Throughput.
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Frames {
+        public long frames;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        Mat frame = Samples.image();
+        Mat resized = new Mat();
+        Imgproc.resize(frame, resized, new Size(size, size));
+        frame.release();
+        images = Collections.nCopies(batch, resized);
+
+        network = Dnn.readNetFromDarknet(Samples.cfg(model).toString(), Samples.weights(model).toString());
+        network.setPreferableBackend(Dnn.DNN_BACKEND_OPENCV);
+        network.setPreferableTarget(Dnn.DNN_TARGET_CPU);
+        outputLayersNames = Yolo.getOutputLayerNames(network);
+    }
+
+    @TearDown
+    public void tearDown() {
+        images.get(0).release();
+        release();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public List<Mat> forwardThroughput(Frames counter) {
+        counter.frames += batch;
+        return forward();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public List<Mat> forwardLatency() {
+        return forward();
+    }
+
+    private List<Mat> forward() {
+        release();
+        Mat blob = Dnn.blobFromImages(images, 1 / 255.0);
+        network.setInput(blob);
+        network.forward(outputs, outputLayersNames);
+        blob.release();
+        return outputs;
+    }
+
+    private void release() {
+        for (Mat output : outputs) {
+            output.release();
+        }
+        outputs.clear();
+    }
+}
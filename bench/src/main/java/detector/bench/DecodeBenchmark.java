@@ -0,0 +1,93 @@
+package detector.bench;
+
+import detector.Detections;
+import detector.OpenCv;
+import detector.YoloDecoder;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect2d;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Разбор выходов сети: прежний построчный разбор через Mat и YoloDecoder.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+    static {
+        OpenCv.load();
+    }
+
+    private static final float MIN_PROBABILITY = 0.5f;
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    @Param({"256", "416", "608"})
+    public int size;
+
+    @Param({"100", "1000", "10000"})
+    public int candidates;
+
+    private List<Mat> outputs;
+    private final YoloDecoder serial = new YoloDecoder();
+    private final YoloDecoder parallel = new YoloDecoder(ForkJoinPool.commonPool());
+    private final Detections detections = new Detections();
+
+    @Setup
+    public void setup() {
+        outputs = Samples.outputs(size, 80, candidates, 42);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (Mat output : outputs) {
+            output.release();
+        }
+    }
+
+    @Benchmark
+    public Detections decoder() {
+        detections.clear();
+        serial.decode(outputs, WIDTH, HEIGHT, MIN_PROBABILITY, detections);
+        return detections;
+    }
+
+    @Benchmark
+    public Detections decoderParallel() {
+        detections.clear();
+        parallel.decode(outputs, WIDTH, HEIGHT, MIN_PROBABILITY, detections);
+        return detections;
+    }
+
+    // Разбор в том виде, в котором он был в Main до YoloDecoder.
+    @Benchmark
+    public List<Rect2d> legacyPerRow() {
+        List<Integer> classIndexes = new ArrayList<>();
+        List<Float> confidencesList = new ArrayList<>();
+        List<Rect2d> boundingBoxesList = new ArrayList<>();
+        for (Mat output : outputs) {
+            for (int i = 0; i < output.rows(); i++) {
+                Mat scores = output.row(i).colRange(5, output.cols());
+                Core.MinMaxLocResult mm = Core.minMaxLoc(scores);
+                if (mm.maxVal > MIN_PROBABILITY) {
+                    int centerX = (int) (output.row(i).get(0, 0)[0] * WIDTH);
+                    int centerY = (int) (output.row(i).get(0, 1)[0] * HEIGHT);
+                    int boxWidth = (int) (output.row(i).get(0, 2)[0] * WIDTH);
+                    int boxHeight = (int) (output.row(i).get(0, 3)[0] * HEIGHT);
+                    classIndexes.add((int) mm.maxLoc.x);
+                    confidencesList.add((float) mm.maxVal);
+                    boundingBoxesList.add(new Rect2d(centerX - boxWidth / 2, centerY - boxHeight / 2,
+                            boxWidth, boxHeight));
+                }
+            }
+        }
+        return boundingBoxesList;
+    }
+}
@@ -0,0 +1,70 @@
+package detector.bench;
+
+import detector.OpenCv;
+import detector.Yolo;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.dnn.Dnn;
+import org.opencv.dnn.Net;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Прямой проход сети на CPU.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ForwardBenchmark {
+    static {
+        OpenCv.load();
+    }
+
+    @Param({"yolov4", "custom"})
+    public String model;
+
+    @Param({"256", "416", "608"})
+    public int size;
+
+    private Net network;
+    private Mat blob;
+    private List<String> outputLayersNames;
+    private final List<Mat> outputs = new ArrayList<>();
+
+    @Setup
+    public void setup() throws IOException {
+        Mat frame = Samples.image();
+        network = Dnn.readNetFromDarknet(Samples.cfg(model).toString(), Samples.weights(model).toString());
+        network.setPreferableBackend(Dnn.DNN_BACKEND_OPENCV);
+        network.setPreferableTarget(Dnn.DNN_TARGET_CPU);
+        outputLayersNames = Yolo.getOutputLayerNames(network);
+        blob = Dnn.blobFromImage(frame, 1 / 255.0, new Size(size, size));
+        frame.release();
+    }
+
+    @TearDown
+    public void tearDown() {
+        blob.release();
+        release();
+    }
+
+    @Benchmark
+    public List<Mat> forward() {
+        release();
+        network.setInput(blob);
+        network.forward(outputs, outputLayersNames);
+        return outputs;
+    }
+
+    private void release() {
+        for (Mat output : outputs) {
+            output.release();
+        }
+        outputs.clear();
+    }
+}
@@ -0,0 +1,131 @@
+package detector.bench;
+
+import detector.OpenCv;
+import detector.Options;
+import detector.display.MjpegServer;
+import org.opencv.core.Mat;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Нагрузочная проверка MjpegServer: кадр filename.png подаётся в show с частотой --fps,
+// к серверу подключаются --clients клиентов, из которых --slow читают медленно
+// (--slow-delay мс паузы после каждого кадра). Выводятся время show (оно не должно
+// зависеть от клиентов), число закодированных кадров и кадры, полученные быстрыми и
+// медленными клиентами.
+//
+// java -cp target/benchmarks.jar detector.bench.MjpegLoad --clients=300 --slow=30 --seconds=10
+public class MjpegLoad {
+    public static void main(String[] args) throws Exception {
+        OpenCv.load();
+        Options options = Options.parse(args);
+        int clients = options.getInt("clients", 300);
+        int slow = options.getInt("slow", clients / 10);
+        int slowDelay = options.getInt("slow-delay", 500);
+        int fps = options.getInt("fps", 30);
+        int seconds = options.getInt("seconds", 10);
+        Mat frame = Samples.image();
+
+        MjpegServer server = new MjpegServer("127.0.0.1", 0, 80, options.getInt("encoders", 2));
+        int port = server.port();
+        AtomicLongArray received = new AtomicLongArray(clients);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            int client = i;
+            long delay = i < slow ? slowDelay : 0;
+            Thread thread = new Thread(() -> read(port, delay, received, client), "client-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        while (server.clients() < clients) {
+            Thread.sleep(10);
+        }
+
+        long frameNanos = 1_000_000_000L / fps;
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long next = System.nanoTime();
+        long shows = 0;
+        long showNanos = 0;
+        long maxShowNanos = 0;
+        while (System.nanoTime() < end) {
+            long start = System.nanoTime();
+            server.show(frame);
+            long elapsed = System.nanoTime() - start;
+            shows++;
+            showNanos += elapsed;
+            maxShowNanos = Math.max(maxShowNanos, elapsed);
+            next += frameNanos;
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) {
+                Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+            }
+        }
+
+        long fast = 0;
+        long slowFrames = 0;
+        for (int i = 0; i < clients; i++) {
+            if (i < slow) {
+                slowFrames += received.get(i);
+            } else {
+                fast += received.get(i);
+            }
+        }
+        System.out.printf("клиентов=%d (медленных %d), кадр %dx%d, потоки клиентов %s%n", clients, slow,
+                frame.cols(), frame.rows(), server.virtualThreads() ? "виртуальные" : "обычные");
+        System.out.printf("show: %d вызовов, среднее %.1f мкс, максимум %.1f мкс%n", shows,
+                showNanos / 1e3 / shows, maxShowNanos / 1e3);
+        System.out.printf("закодировано=%d пропущено кодировщиком=%d%n", server.encoded(), server.skipped());
+        System.out.printf("кадров на быстрого клиента=%.1f, на медленного=%.1f, выброшено для клиентов=%d%n",
+                clients > slow ? (double) fast / (clients - slow) : 0, slow > 0 ? (double) slowFrames / slow : 0,
+                server.dropped());
+        server.close();
+        frame.release();
+    }
+
+    // Читает поток и считает части; после каждой части ждёт delay мс.
+    private static void read(int port, long delay, AtomicLongArray received, int client) {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = new BufferedInputStream(socket.getInputStream(), 1 << 16);
+            while (true) {
+                String line = readLine(in);
+                if (line == null) {
+                    return;
+                }
+                if (line.startsWith("Content-Length:")) {
+                    long length = Long.parseLong(line.substring(15).trim());
+                    readLine(in);
+                    in.skipNBytes(length);
+                    received.incrementAndGet(client);
+                    if (delay > 0) {
+                        Thread.sleep(delay);
+                    }
+                }
+            }
+        } catch (IOException | InterruptedException ignored) {
+            // Сервер закрыт.
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '\n') {
+                return sb.toString().trim();
+            }
+            sb.append((char) c);
+        }
+        return null;
+    }
+}
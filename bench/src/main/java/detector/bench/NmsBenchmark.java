@@ -0,0 +1,89 @@
+package detector.bench;
+
+import detector.Detections;
+import detector.Nms;
+import detector.OpenCv;
+import detector.YoloDecoder;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfFloat;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.MatOfRect2d;
+import org.opencv.core.Rect2d;
+import org.opencv.dnn.Dnn;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Подавление немаксимумов: Nms против Dnn.NMSBoxes на одних и тех же рамках.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NmsBenchmark {
+    static {
+        OpenCv.load();
+    }
+
+    private static final float MIN_PROBABILITY = 0.5f;
+    private static final float THRESHOLD = 0.3f;
+
+    @Param({"100", "1000", "10000"})
+    public int candidates;
+
+    private final Detections detections = new Detections();
+    private final Nms nms = new Nms();
+    private MatOfRect2d boundingBoxes;
+    private MatOfFloat confidences;
+    private final MatOfInt indices = new MatOfInt();
+
+    @Setup
+    public void setup() {
+        List<Mat> outputs = Samples.outputs(608, 80, candidates, 7);
+        new YoloDecoder().decode(outputs, 1920, 1080, MIN_PROBABILITY, detections);
+        for (Mat output : outputs) {
+            output.release();
+        }
+
+        int n = detections.size();
+        Rect2d[] rects = new Rect2d[n];
+        for (int i = 0; i < n; i++) {
+            rects[i] = new Rect2d(detections.x[i], detections.y[i], detections.w[i], detections.h[i]);
+        }
+        boundingBoxes = new MatOfRect2d(rects);
+        confidences = new MatOfFloat(Arrays.copyOf(detections.scores, n));
+
+        // Результаты обеих реализаций должны совпадать.
+        Dnn.NMSBoxes(boundingBoxes, confidences, MIN_PROBABILITY, THRESHOLD, indices);
+        int[] expected = indices.empty() ? new int[0] : indices.toArray();
+        if (!Arrays.equals(expected, nms.suppress(detections, MIN_PROBABILITY, THRESHOLD, false))) {
+            throw new IllegalStateException("Nms не совпадает с Dnn.NMSBoxes");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        boundingBoxes.release();
+        confidences.release();
+        indices.release();
+    }
+
+    @Benchmark
+    public int[] javaNms() {
+        return nms.suppress(detections, MIN_PROBABILITY, THRESHOLD, false);
+    }
+
+    @Benchmark
+    public int[] javaNmsPerClass() {
+        return nms.suppress(detections, MIN_PROBABILITY, THRESHOLD, true);
+    }
+
+    @Benchmark
+    public MatOfInt opencvNmsBoxes() {
+        Dnn.NMSBoxes(boundingBoxes, confidences, MIN_PROBABILITY, THRESHOLD, indices);
+        return indices;
+    }
+}
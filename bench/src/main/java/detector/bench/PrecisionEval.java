@@ -0,0 +1,320 @@
+package detector.bench;
+
+import detector.Detections;
+import detector.FrameDetector;
+import detector.InputGeometry;
+import detector.OpenCv;
+import detector.Options;
+import detector.Precision;
+import detector.Tracker;
+import detector.Yolo;
+import detector.batch.BatchRunner;
+import detector.memory.NativeStats;
+import detector.model.Model;
+import detector.model.ModelRegistry;
+import org.opencv.core.Mat;
+import org.opencv.dnn.Dnn;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Сравнение моделей и режимов точности на размеченном наборе изображений:
+// mAP@0.5, время детекции одного изображения и память.
+// Набор - папка с изображениями и разметкой darknet рядом с ними (image.jpg + image.txt,
+// строки "класс cx cy w h" в долях кадра) и файлом имён классов (--names, по умолчанию
+// classes.names в папке набора). Классы модели и набора сопоставляются по имени, mAP
+// считается по классам набора, которые знает модель.
+// Каждая пара модель/точность запускается в отдельной JVM, чтобы память одного режима
+// не смешивалась с другим: model_rss - прирост резидентной памяти при загрузке модели,
+// peak_rss - пик памяти процесса за весь прогон.
+// INT8 калибруется по изображениям из --calibration, которых нет в наборе; без этой папки
+// первые --calibration-images изображений набора идут на калибровку и исключаются из оценки.
+//
+// java -cp target/benchmarks.jar detector.bench.PrecisionEval dataset --models=yolov4,custom
+//      --precision=fp32,fp16,int8 --size=416 --calibration=calib --calibration-images=16
+public class PrecisionEval {
+    private static final float MATCH_IOU = 0.5f;
+    private static final String RESULT = "RESULT ";
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        if (options.positional().isEmpty()) {
+            System.err.println("Укажите папку с размеченными изображениями");
+            return;
+        }
+        if (options.has("single")) {
+            OpenCv.load();
+            String[] single = options.get("single", "").split(":");
+            System.out.println(RESULT + evaluate(options, single[0], Precision.parse(single[1])));
+            return;
+        }
+
+        System.out.printf("%-8s %-5s %7s %7s %9s %9s %9s %10s %9s%n", "model", "prec", "mAP@.5", "classes",
+                "mean,ms", "p50,ms", "p95,ms", "model_rss", "peak_rss");
+        for (String model : options.get("models", "yolov4,custom").split(",")) {
+            for (String precision : options.get("precision", "fp32,fp16,int8").split(",")) {
+                String result = child(args, model.trim() + ":" + precision.trim(), options.flag("verbose"));
+                System.out.println(result != null ? result : String.format("%-8s %-5s не удалось", model, precision));
+            }
+        }
+    }
+
+    // Запускает оценку одной пары в отдельной JVM и возвращает строку результата.
+    // Вывод JVM печатается только с --verbose (кроме предупреждений о FP16 и весах).
+    private static String child(String[] args, String single, boolean verbose)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path")));
+        for (String property : new String[]{"bench.root", "java.library.path"}) {
+            if (System.getProperty(property) != null) {
+                command.add("-D" + property + "=" + System.getProperty(property));
+            }
+        }
+        command.add(PrecisionEval.class.getName());
+        command.addAll(Arrays.asList(args));
+        command.add("--single=" + single);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String result = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(RESULT)) {
+                    result = line.substring(RESULT.length());
+                } else if (verbose || line.startsWith("FP16") || line.startsWith("Веса")) {
+                    System.out.println("  " + line);
+                }
+            }
+        }
+        process.waitFor();
+        return result;
+    }
+
+    private static String evaluate(Options options, String modelName, Precision precision) throws IOException {
+        Path dataset = Paths.get(options.positional().get(0));
+        List<String> classes = Yolo.labels(options.get("names", dataset.resolve("classes.names").toString()));
+        List<Path> images;
+        try (Stream<Path> files = Files.walk(dataset)) {
+            images = files.filter(BatchRunner::isImage).sorted().collect(Collectors.toList());
+        }
+        if (images.isEmpty()) {
+            throw new IllegalStateException("В " + dataset + " нет изображений");
+        }
+        if (Samples.weights(modelName).getFileName().toString().startsWith("zero-")) {
+            System.out.println("Веса " + modelName + " не найдены, используются нули: mAP не имеет смысла");
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty(modelName + ".cfg", Samples.cfg(modelName).toString());
+        properties.setProperty(modelName + ".weights", Samples.weights(modelName).toString());
+        properties.setProperty(modelName + ".names", Samples.names(modelName).toString());
+        int size = options.getInt("size", 0);
+        // Калибровка INT8 - по отдельной папке --calibration; без неё первые изображения набора
+        // уходят на калибровку и не оцениваются (во всех режимах, чтобы набор был одинаковым).
+        int calibrationImages = options.getInt("calibration-images", 16);
+        List<Path> calibration;
+        if (options.has("calibration")) {
+            try (Stream<Path> files = Files.walk(Paths.get(options.get("calibration", ".")))) {
+                calibration = files.filter(BatchRunner::isImage).sorted().limit(calibrationImages)
+                        .collect(Collectors.toList());
+            }
+        } else {
+            int count = Math.min(images.size() - 1, calibrationImages);
+            calibration = new ArrayList<>(images.subList(0, count));
+            images = images.subList(count, images.size());
+        }
+        ModelRegistry registry = new ModelRegistry(properties,
+                input -> new InputGeometry(size > 0 ? size : input[0], size > 0 ? size : input[1], true),
+                (network, spec, inputSize) -> {
+                    // Оценка для CPU-узлов: OpenCV на CPU, FP16 - только если есть OpenCL.
+                    boolean openCl = precision == Precision.FP16
+                            && Precision.FP16.target(Dnn.DNN_BACKEND_OPENCV, Dnn.DNN_TARGET_OPENCL)
+                            == Dnn.DNN_TARGET_OPENCL_FP16;
+                    if (precision == Precision.FP16 && !openCl) {
+                        System.out.println("FP16 недоступен (нет OpenCL), результат соответствует FP32");
+                    }
+                    network.setPreferableBackend(Dnn.DNN_BACKEND_OPENCV);
+                    network.setPreferableTarget(openCl ? Dnn.DNN_TARGET_OPENCL_FP16 : Dnn.DNN_TARGET_CPU);
+                },
+                Files.createTempFile("models", ".properties"), precision, calibration);
+
+        System.gc();
+        long rssBefore = NativeStats.rssBytes();
+        Model model = registry.acquire(modelName);
+        long modelRss = NativeStats.rssBytes() - rssBefore;
+        // Низкий порог оценки, чтобы кривая precision/recall строилась по всем рамкам.
+        FrameDetector detector = new FrameDetector(model.network, model.outputNames, model.geometry,
+                options.getFloat("min-probability", 0.01f), options.getFloat("threshold", 0.45f), true);
+        // Класс модели -> класс набора (-1, если в наборе такого нет).
+        int[] toDataset = new int[model.labels.size()];
+        boolean[] known = new boolean[classes.size()];
+        for (int i = 0; i < toDataset.length; i++) {
+            toDataset[i] = classes.indexOf(model.labels.get(i));
+            if (toDataset[i] >= 0) {
+                known[toDataset[i]] = true;
+            }
+        }
+
+        AveragePrecision ap = new AveragePrecision(classes.size());
+        double[] millis = new double[images.size()];
+        int count = 0;
+        for (Path path : images) {
+            Mat image = Imgcodecs.imread(path.toString());
+            if (image.empty()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            int[] kept = detector.detect(image);
+            millis[count++] = (System.nanoTime() - start) / 1e6;
+            Detections truth = truth(path, image.width(), image.height());
+            Detections predicted = new Detections();
+            Detections all = detector.detections();
+            for (int index : kept) {
+                int classId = toDataset[all.classIds[index]];
+                if (classId >= 0) {
+                    predicted.add(classId, all.scores[index], all.x[index], all.y[index], all.w[index], all.h[index]);
+                }
+            }
+            ap.add(truth, predicted);
+            image.release();
+        }
+        if (count == 0) {
+            throw new IllegalStateException("В " + dataset + " нет изображений");
+        }
+        double[] sorted = Arrays.copyOf(millis, count);
+        Arrays.sort(sorted);
+        double mean = Arrays.stream(sorted).average().orElse(0);
+        return String.format("%-8s %-5s %7s %7d %9.1f %9.1f %9.1f %9dM %8dM", modelName, precision,
+                ap.evaluated(known) == 0 ? "-" : String.format("%.3f", ap.mean(known)), ap.evaluated(known),
+                mean, sorted[count / 2], sorted[Math.min(count - 1, (int) (count * 0.95))],
+                modelRss >> 20, NativeStats.peakRssBytes() >> 20);
+    }
+
+    // Разметка darknet рядом с изображением: "класс cx cy w h" в долях кадра.
+    private static Detections truth(Path image, int width, int height) throws IOException {
+        String name = image.getFileName().toString();
+        Path labels = image.resolveSibling(name.substring(0, name.lastIndexOf('.')) + ".txt");
+        Detections truth = new Detections();
+        if (!Files.exists(labels)) {
+            return truth;
+        }
+        for (String line : Files.readAllLines(labels)) {
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length < 5) {
+                continue;
+            }
+            float w = Float.parseFloat(parts[3]) * width;
+            float h = Float.parseFloat(parts[4]) * height;
+            truth.add(Integer.parseInt(parts[0]), 1, Float.parseFloat(parts[1]) * width - w / 2,
+                    Float.parseFloat(parts[2]) * height - h / 2, w, h);
+        }
+        return truth;
+    }
+
+    // Средняя точность по классам (VOC, интерполяция по всем точкам) при IoU >= 0.5.
+    private static class AveragePrecision {
+        // По классам: оценки рамок, признак совпадения с эталоном и число эталонных рамок.
+        private final List<List<float[]>> scored = new ArrayList<>();
+        private final int[] truths;
+
+        AveragePrecision(int classes) {
+            truths = new int[classes];
+            for (int i = 0; i < classes; i++) {
+                scored.add(new ArrayList<>());
+            }
+        }
+
+        // Рамки изображения по убыванию оценки сопоставляются с лучшей свободной
+        // эталонной рамкой того же класса.
+        void add(Detections truth, Detections predicted) {
+            for (int i = 0; i < truth.size(); i++) {
+                if (truth.classIds[i] >= 0 && truth.classIds[i] < truths.length) {
+                    truths[truth.classIds[i]]++;
+                }
+            }
+            Integer[] order = new Integer[predicted.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Float.compare(predicted.scores[b], predicted.scores[a]));
+            boolean[] used = new boolean[truth.size()];
+            for (int j : order) {
+                int best = -1;
+                float bestIou = MATCH_IOU;
+                for (int i = 0; i < truth.size(); i++) {
+                    if (used[i] || truth.classIds[i] != predicted.classIds[j]) {
+                        continue;
+                    }
+                    float iou = Tracker.iou(truth.x[i], truth.y[i], truth.w[i], truth.h[i],
+                            predicted.x[j], predicted.y[j], predicted.w[j], predicted.h[j]);
+                    if (iou >= bestIou) {
+                        best = i;
+                        bestIou = iou;
+                    }
+                }
+                if (best >= 0) {
+                    used[best] = true;
+                }
+                scored.get(predicted.classIds[j]).add(new float[]{predicted.scores[j], best >= 0 ? 1 : 0});
+            }
+        }
+
+        // Число классов, которые знает модель и которые есть в разметке.
+        int evaluated(boolean[] known) {
+            int count = 0;
+            for (int c = 0; c < truths.length; c++) {
+                if (known[c] && truths[c] > 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        double mean(boolean[] known) {
+            double sum = 0;
+            for (int c = 0; c < truths.length; c++) {
+                if (known[c] && truths[c] > 0) {
+                    sum += average(c);
+                }
+            }
+            return sum / evaluated(known);
+        }
+
+        private double average(int classId) {
+            List<float[]> detections = new ArrayList<>(scored.get(classId));
+            detections.sort((a, b) -> Float.compare(b[0], a[0]));
+            int n = detections.size();
+            double[] precision = new double[n];
+            double[] recall = new double[n];
+            int matched = 0;
+            for (int i = 0; i < n; i++) {
+                matched += (int) detections.get(i)[1];
+                precision[i] = matched / (double) (i + 1);
+                recall[i] = matched / (double) truths[classId];
+            }
+            // Площадь под огибающей кривой precision(recall): точность в точке - наибольшая
+            // точность при той же или большей полноте.
+            for (int i = n - 2; i >= 0; i--) {
+                precision[i] = Math.max(precision[i], precision[i + 1]);
+            }
+            double ap = 0;
+            double previousRecall = 0;
+            for (int i = 0; i < n; i++) {
+                ap += (recall[i] - previousRecall) * precision[i];
+                previousRecall = recall[i];
+            }
+            return ap;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package detector.bench;
+
+import detector.InputGeometry;
+import detector.OpenCv;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.dnn.Dnn;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Изменение размера кадра и формирование blob: растяжение, letterbox и тайлы 2x2 (пять областей).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreprocessBenchmark {
+    static {
+        OpenCv.load();
+    }
+
+    @Param({"256", "416", "608"})
+    public int size;
+
+    private Mat frame;
+    private Mat resized;
+    private Size inputSize;
+    private InputGeometry letterbox;
+    private InputGeometry tiles;
+    private final List<Mat> inputs = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        frame = Samples.image();
+        resized = new Mat();
+        inputSize = new Size(size, size);
+        Imgproc.resize(frame, resized, inputSize);
+        letterbox = new InputGeometry(size, size, true);
+        tiles = new InputGeometry(size, size, true, 2, 2, 0.2f);
+    }
+
+    @TearDown
+    public void tearDown() {
+        frame.release();
+        resized.release();
+        for (Mat input : inputs) {
+            input.release();
+        }
+    }
+
+    @Benchmark
+    public Mat resize() {
+        Imgproc.resize(frame, resized, inputSize);
+        return resized;
+    }
+
+    @Benchmark
+    public void blobFromImage() {
+        Dnn.blobFromImage(resized, 1 / 255.0).release();
+    }
+
+    @Benchmark
+    public void letterboxBlob() {
+        letterbox.blob(frame, inputs).release();
+    }
+
+    @Benchmark
+    public void tiledBlob() {
+        tiles.blob(frame, inputs).release();
+    }
+}
@@ -0,0 +1,101 @@
+package detector.bench;
+
+import detector.Detections;
+import detector.OpenCv;
+import detector.Overlay;
+import detector.Yolo;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Scalar;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Нанесение рамок и кодирование кадра для отображения.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+    static {
+        OpenCv.load();
+    }
+
+    @Param({"640", "1920"})
+    public int width;
+
+    @Param({"10", "100"})
+    public int boxes;
+
+    private Mat image;
+    private Mat frame;
+    private final MatOfByte buf = new MatOfByte();
+    private BufferedImage bufferedImage;
+    private byte[] pixels;
+    private final Detections detections = new Detections();
+    private int[] kept;
+    private List<String> labels;
+    private Scalar[] colors;
+
+    @Setup
+    public void setup() {
+        Mat sample = Samples.image();
+        image = Samples.scaled(sample, width);
+        sample.release();
+        frame = image.clone();
+        bufferedImage = new BufferedImage(image.cols(), image.rows(), BufferedImage.TYPE_3BYTE_BGR);
+        pixels = ((DataBufferByte) bufferedImage.getRaster().getDataBuffer()).getData();
+
+        labels = Samples.labels("yolov4");
+        colors = Yolo.generateColors(labels.size());
+        Random random = new Random(1);
+        kept = new int[boxes];
+        for (int i = 0; i < boxes; i++) {
+            detections.add(random.nextInt(labels.size()), 0.5f + random.nextFloat() / 2,
+                    random.nextInt(image.cols()), random.nextInt(image.rows()),
+                    20 + random.nextInt(200), 20 + random.nextInt(200));
+            kept[i] = i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        image.release();
+        frame.release();
+        buf.release();
+    }
+
+    @Benchmark
+    public Mat draw() {
+        image.copyTo(frame);
+        Overlay.draw(frame, detections, kept, labels, colors);
+        return frame;
+    }
+
+    // Копирование кадра в BufferedImage, которое использует SwingSink.
+    @Benchmark
+    public BufferedImage copyToImage() {
+        image.get(0, 0, pixels);
+        return bufferedImage;
+    }
+
+    // Прежний путь отображения: кодирование каждого кадра в PNG.
+    @Benchmark
+    public MatOfByte encodePng() {
+        Imgcodecs.imencode(".png", image, buf);
+        return buf;
+    }
+
+    @Benchmark
+    public MatOfByte encodeJpeg() {
+        Imgcodecs.imencode(".jpg", image, buf);
+        return buf;
+    }
+}
@@ -0,0 +1,78 @@
+package detector.bench;
+
+import detector.Detections;
+import detector.shm.DetectionReader;
+import detector.shm.DetectionRecord;
+import detector.shm.DetectionRing;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Пропускная способность кольцевого буфера детекций: публикация кадра из detectionsPerFrame
+// детекций и чтение тех же записей читателем. Детекций в секунду = кадров в секунду *
+// detectionsPerFrame. В группе tail писатель и читатель работают одновременно в разных потоках.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RingBenchmark {
+    @Param({"1", "20", "100"})
+    public int detectionsPerFrame;
+
+    private Path path;
+    private DetectionRing ring;
+    private DetectionReader reader;
+    private final Detections detections = new Detections();
+    private int[] kept;
+    private long frame;
+    private long sum;
+
+    @Setup
+    public void setup() throws IOException {
+        path = Files.createTempFile("detections", ".ring");
+        ring = new DetectionRing(path);
+        reader = new DetectionReader(path);
+        kept = new int[detectionsPerFrame];
+        for (int i = 0; i < detectionsPerFrame; i++) {
+            detections.add(i % 80, 0.5f + i % 50 / 100f, i * 7, i * 3, 40, 80);
+            kept[i] = i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        ring.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    @Group("publish")
+    public void publishFrame() {
+        ring.publish(0, frame++, System.nanoTime(), detections, kept);
+    }
+
+    @Benchmark
+    @Group("tail")
+    @GroupThreads(1)
+    public void writer() {
+        ring.publish(0, frame++, System.nanoTime(), detections, kept);
+    }
+
+    // Число прочитанных записей за вызов; без новых записей вызов возвращает 0.
+    @Benchmark
+    @Group("tail")
+    @GroupThreads(1)
+    public int reader() {
+        return reader.poll(this::consume, detectionsPerFrame);
+    }
+
+    private void consume(DetectionRecord record) {
+        sum += record.frame + record.classId;
+    }
+}
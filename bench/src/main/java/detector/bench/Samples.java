@@ -0,0 +1,133 @@
+package detector.bench;
+
+import detector.Yolo;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Общие входные данные для бенчмарков: образцы изображений, модели и синтетические выходы сети.
+final class Samples {
+    private Samples() {
+    }
+
+    // Корень репозитория: -Dbench.root или первая папка вверх от текущей, где есть src/yolov4.
+    static Path root() {
+        String configured = System.getProperty("bench.root");
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        Path dir = Paths.get("").toAbsolutePath();
+        while (dir != null && !Files.isDirectory(dir.resolve("src/yolov4"))) {
+            dir = dir.getParent();
+        }
+        if (dir == null) {
+            throw new IllegalStateException("Не найден корень репозитория, укажите -Dbench.root");
+        }
+        return dir;
+    }
+
+    // Фиксированный образец кадра: -Dbench.image или filename.png из корня репозитория.
+    static Mat image() {
+        String path = System.getProperty("bench.image", root().resolve("filename.png").toString());
+        Mat image = Imgcodecs.imread(path);
+        if (image.empty()) {
+            throw new IllegalStateException("Не удалось прочитать " + path);
+        }
+        return image;
+    }
+
+    static Path cfg(String model) {
+        return "custom".equals(model) ? root().resolve("src/custom.cfg") : root().resolve("src/yolov4/yolov4.cfg");
+    }
+
+    static Path names(String model) {
+        return "custom".equals(model) ? root().resolve("src/classes.names") : root().resolve("src/yolov4/yolov4.names");
+    }
+
+    static List<String> labels(String model) {
+        return Yolo.labels(names(model).toString());
+    }
+
+    // Файл весов рядом с cfg. Веса не хранятся в репозитории, поэтому при их отсутствии
+    // создаётся разреженный файл из нулей: время forward от значений весов не зависит.
+    static Path weights(String model) throws IOException {
+        Path cfg = cfg(model);
+        String name = cfg.getFileName().toString().replace(".cfg", ".weights");
+        Path weights = cfg.resolveSibling(name);
+        if (Files.exists(weights)) {
+            return weights;
+        }
+        Path zero = Paths.get(System.getProperty("java.io.tmpdir"), "zero-" + name);
+        if (!Files.exists(zero)) {
+            try (RandomAccessFile file = new RandomAccessFile(zero.toFile(), "rw")) {
+                // Заголовок darknet: major, minor, revision, seen (int64 для версии 0.2).
+                ByteBuffer header = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(0).putInt(2).putInt(0).putLong(0);
+                file.write(header.array());
+                file.setLength(512L * 1024 * 1024);
+            }
+        }
+        return zero;
+    }
+
+    // Число предсказаний YOLOv4 для входа size x size: три масштаба по три якоря.
+    static int rows(int size) {
+        int rows = 0;
+        for (int stride : new int[]{8, 16, 32}) {
+            rows += 3 * (size / stride) * (size / stride);
+        }
+        return rows;
+    }
+
+    // Выходы трёх слоёв YOLO, в которых ровно candidates строк проходят порог 0.5.
+    static List<Mat> outputs(int size, int classes, int candidates, long seed) {
+        Random random = new Random(seed);
+        int total = rows(size);
+        candidates = Math.min(candidates, total);
+        List<Mat> outputs = new ArrayList<>();
+        int row = 0;
+        for (int stride : new int[]{8, 16, 32}) {
+            int rows = 3 * (size / stride) * (size / stride);
+            int cols = 5 + classes;
+            float[] data = new float[rows * cols];
+            for (int i = 0; i < rows; i++, row++) {
+                int offset = i * cols;
+                data[offset] = random.nextFloat();
+                data[offset + 1] = random.nextFloat();
+                data[offset + 2] = 0.02f + random.nextFloat() * 0.2f;
+                data[offset + 3] = 0.02f + random.nextFloat() * 0.2f;
+                boolean candidate = (long) row * candidates / total != (long) (row + 1) * candidates / total;
+                for (int c = 5; c < cols; c++) {
+                    data[offset + c] = random.nextFloat() * 0.4f;
+                }
+                if (candidate) {
+                    data[offset + 5 + random.nextInt(classes)] = 0.5f + random.nextFloat() * 0.5f;
+                }
+            }
+            Mat output = new Mat(rows, cols, CvType.CV_32F);
+            output.put(0, 0, data);
+            outputs.add(output);
+        }
+        return outputs;
+    }
+
+    // Кадр заданной ширины с сохранением пропорций образца.
+    static Mat scaled(Mat image, int width) {
+        Mat scaled = new Mat();
+        Imgproc.resize(image, scaled, new Size(width, Math.round(image.rows() * (double) width / image.cols())));
+        return scaled;
+    }
+}
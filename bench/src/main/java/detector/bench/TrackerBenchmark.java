@@ -0,0 +1,81 @@
+package detector.bench;
+
+import detector.Detections;
+import detector.Tracker;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Трекер на синтетической сцене: objects рамок движутся по синусоидам с шумом.
+// update - кадр с детекциями (predict + сопоставление), predict - кадр между запусками детектора.
+// Отсутствие выделений памяти проверяется профилировщиком: -prof gc (gc.alloc.rate.norm около 0).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackerBenchmark {
+    // Период движения в кадрах: сцена повторяется без скачков.
+    private static final int PERIOD = 128;
+
+    @Param({"10", "100", "500"})
+    public int objects;
+
+    private final Tracker tracker = new Tracker();
+    private final Detections[] frames = new Detections[PERIOD];
+    private int[] kept;
+    private int frame;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(7);
+        float[] cx = new float[objects];
+        float[] cy = new float[objects];
+        float[] ax = new float[objects];
+        float[] ay = new float[objects];
+        float[] size = new float[objects];
+        int[] classes = new int[objects];
+        for (int i = 0; i < objects; i++) {
+            cx[i] = random.nextFloat() * 1920;
+            cy[i] = random.nextFloat() * 1080;
+            ax[i] = 20 + random.nextFloat() * 100;
+            ay[i] = 20 + random.nextFloat() * 100;
+            size[i] = 20 + random.nextFloat() * 80;
+            classes[i] = random.nextInt(80);
+        }
+        for (int f = 0; f < PERIOD; f++) {
+            Detections detections = new Detections();
+            double phase = 2 * Math.PI * f / PERIOD;
+            for (int i = 0; i < objects; i++) {
+                float x = (float) (cx[i] + ax[i] * Math.sin(phase + i)) + random.nextFloat() * 2;
+                float y = (float) (cy[i] + ay[i] * Math.cos(phase + i)) + random.nextFloat() * 2;
+                detections.add(classes[i], 0.5f + random.nextFloat() / 2, x, y, size[i], size[i]);
+            }
+            frames[f] = detections;
+        }
+        kept = new int[objects];
+        for (int i = 0; i < objects; i++) {
+            kept[i] = i;
+        }
+        // Прогоняем период, чтобы все объекты были заведены и буферы выросли.
+        for (int f = 0; f < PERIOD; f++) {
+            update();
+        }
+    }
+
+    @Benchmark
+    public Tracker update() {
+        tracker.predict(1);
+        tracker.update(frames[frame], kept);
+        frame = (frame + 1) % PERIOD;
+        return tracker;
+    }
+
+    @Benchmark
+    public Tracker predict() {
+        tracker.predict(1);
+        return tracker;
+    }
+}
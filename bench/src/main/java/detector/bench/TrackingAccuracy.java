@@ -0,0 +1,163 @@
+package detector.bench;
+
+import detector.Detections;
+import detector.FrameDetector;
+import detector.InputGeometry;
+import detector.OpenCv;
+import detector.Options;
+import detector.Tracker;
+import detector.Yolo;
+import org.opencv.core.Mat;
+import org.opencv.dnn.Dnn;
+import org.opencv.dnn.Net;
+import org.opencv.videoio.VideoCapture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Сравнение трекера с запуском детектора на каждом кадре на локальном видео.
+// Эталон - детекции на каждом кадре. Для каждого N детектор "запускается" на каждом N-м кадре
+// (берутся те же эталонные детекции), а на остальных кадрах сравниваются с эталоном:
+// - прогноз трекера;
+// - повтор рамок последнего запуска детектора (как при пропуске кадров без трекера).
+// Рамка считается найденной при IoU >= 0.5 с эталонной рамкой того же класса.
+//
+// java -cp target/benchmarks.jar detector.bench.TrackingAccuracy video.mp4 --every=2,3,5,10 --size=416
+// (по умолчанию размер входа берётся из cfg)
+public class TrackingAccuracy {
+    private static final float MATCH_IOU = 0.5f;
+
+    public static void main(String[] args) throws Exception {
+        OpenCv.load();
+        Options options = Options.parse(args);
+        if (options.positional().isEmpty()) {
+            System.err.println("Укажите видеофайл");
+            return;
+        }
+        String model = options.get("model", "yolov4");
+        int size = options.getInt("size", Yolo.inputSize(Samples.cfg(model).toString())[0]);
+        int maxFrames = options.getInt("frames", 300);
+
+        Net network = Dnn.readNetFromDarknet(Samples.cfg(model).toString(), Samples.weights(model).toString());
+        network.setPreferableBackend(Dnn.DNN_BACKEND_OPENCV);
+        network.setPreferableTarget(Dnn.DNN_TARGET_CPU);
+        FrameDetector detector = new FrameDetector(network, Yolo.getOutputLayerNames(network),
+                new InputGeometry(size, size, true), 0.5f, 0.3f, false);
+
+        // Эталон: детекции на каждом кадре.
+        List<Detections> reference = new ArrayList<>();
+        VideoCapture cap = Yolo.openCapture(options.positional().get(0));
+        Mat frame = new Mat();
+        long detectNanos = 0;
+        while (reference.size() < maxFrames && cap.read(frame)) {
+            long start = System.nanoTime();
+            int[] kept = detector.detect(frame);
+            detectNanos += System.nanoTime() - start;
+            Detections detections = new Detections();
+            for (int index : kept) {
+                Detections all = detector.detections();
+                detections.add(all.classIds[index], all.scores[index],
+                        all.x[index], all.y[index], all.w[index], all.h[index]);
+            }
+            reference.add(detections);
+        }
+        cap.release();
+        frame.release();
+        int frames = reference.size();
+        if (frames == 0) {
+            System.err.println("Не удалось прочитать кадры");
+            return;
+        }
+        double detectMillis = detectNanos / 1e6 / frames;
+        System.out.printf("кадров=%d детектор=%.1fмс/кадр%n", frames, detectMillis);
+        System.out.println("N   детектор,мс/кадр  трекер,мс/кадр  трекер: recall precision IoU"
+                + "   повтор: recall precision IoU");
+
+        for (String value : options.get("every", "2,3,5,10").split(",")) {
+            int every = Integer.parseInt(value.trim());
+            Tracker tracker = new Tracker();
+            Score tracked = new Score();
+            Score held = new Score();
+            Detections last = reference.get(0);
+            long trackNanos = 0;
+            for (int f = 0; f < frames; f++) {
+                Detections truth = reference.get(f);
+                long start = System.nanoTime();
+                tracker.predict(1);
+                if (f % every == 0) {
+                    last = truth;
+                    tracker.update(truth, all(truth));
+                }
+                trackNanos += System.nanoTime() - start;
+                if (f % every != 0) {
+                    tracked.add(truth, tracker);
+                    held.add(truth, last);
+                }
+            }
+            System.out.printf("%-3d %17.1f %15.3f %15s %22s%n", every, detectMillis / every,
+                    trackNanos / 1e6 / frames, tracked, held);
+        }
+    }
+
+    private static int[] all(Detections detections) {
+        int[] kept = new int[detections.size()];
+        for (int i = 0; i < kept.length; i++) {
+            kept[i] = i;
+        }
+        return kept;
+    }
+
+    // Совпадения с эталоном по кадрам между запусками детектора.
+    private static class Score {
+        long truths;
+        long predictions;
+        long matches;
+        double iouSum;
+
+        void add(Detections truth, Tracker tracker) {
+            Detections visible = new Detections();
+            for (int t = 0; t < tracker.count; t++) {
+                if (tracker.visible(t)) {
+                    visible.add(tracker.classIds[t], tracker.scores[t],
+                            tracker.x[t], tracker.y[t], tracker.w[t], tracker.h[t]);
+                }
+            }
+            add(truth, visible);
+        }
+
+        // Жадное сопоставление: каждой эталонной рамке - лучшая свободная рамка того же класса.
+        void add(Detections truth, Detections predicted) {
+            boolean[] used = new boolean[predicted.size()];
+            truths += truth.size();
+            predictions += predicted.size();
+            for (int i = 0; i < truth.size(); i++) {
+                int best = -1;
+                float bestIou = MATCH_IOU;
+                for (int j = 0; j < predicted.size(); j++) {
+                    if (used[j] || predicted.classIds[j] != truth.classIds[i]) {
+                        continue;
+                    }
+                    float iou = Tracker.iou(truth.x[i], truth.y[i], truth.w[i], truth.h[i],
+                            predicted.x[j], predicted.y[j], predicted.w[j], predicted.h[j]);
+                    if (iou >= bestIou) {
+                        best = j;
+                        bestIou = iou;
+                    }
+                }
+                if (best >= 0) {
+                    used[best] = true;
+                    matches++;
+                    iouSum += bestIou;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.3f %.3f %.3f",
+                    truths == 0 ? 1.0 : (double) matches / truths,
+                    predictions == 0 ? 1.0 : (double) matches / predictions,
+                    matches == 0 ? 0.0 : iouSum / matches);
+        }
+    }
+}
@@ -1,235 +1,358 @@
-import org.opencv.core.*;
-import org.opencv.core.Point;
+import detector.BackendTuner;
+import detector.FrameDetector;
+import detector.OpenCv;
+import detector.Options;
+import detector.Precision;
+import detector.Yolo;
+import detector.batch.BatchRunner;
+import detector.display.FrameSink;
+import detector.display.HeadlessSink;
+import detector.display.MjpegServer;
+import detector.display.SwingSink;
+import detector.metrics.MetricsMBean;
+import detector.metrics.MetricsServer;
+import detector.model.Model;
+import detector.model.ModelRegistry;
+import detector.model.ModelSpec;
+import detector.model.ModelSwitch;
+import detector.pipeline.DetectionPipeline;
+import detector.pipeline.OverflowPolicy;
+import detector.pipeline.PipelineConfig;
+import detector.streams.DetectionServer;
+import detector.streams.VideoStream;
+import org.opencv.core.Core;
+import org.opencv.core.Size;
 import org.opencv.dnn.Dnn;
 import org.opencv.dnn.Net;
-import org.opencv.imgcodecs.Imgcodecs;
-import org.opencv.imgproc.Imgproc;
 import org.opencv.videoio.VideoCapture;
 
-import javax.swing.*;
-import java.awt.*;
-import java.awt.image.BufferedImage;
+import javax.management.JMException;
+import java.awt.GraphicsEnvironment;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static java.lang.System.exit;
-
 public class Main {
+    // Папка для результатов обработки.
+    private static final String OUT_FOLDER = "src/out";
+    // Файл реестра моделей.
+    private static final String MODELS_PATH = "src/models.properties";
+    // Выбор автотюнера по моделям, общий для всех сетей запуска.
+    private static final Map<String, BackendTuner.Choice> backends = new HashMap<>();
+
     // Загружаем библиотеку OpenCV, а так же проеверяем версию библиотеки.
     static {
-        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+        OpenCv.load();
         System.out.println("OpenCV version: " + Core.VERSION);
-        clearFolder();
     }
 
-    public static void main(String[] args) throws InterruptedException {
-        // Создаем окно для просмотра изображения.
-        JFrame window = new JFrame("Window:");
-        JLabel screen = new JLabel();
-        window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        window.setVisible(true);
-
-        // Инициализируем видеопоток.
-        VideoCapture cap = new VideoCapture("http://192.168.1.92:4444/video_feed");
-
-        // Инициализируем переменные.
-        Mat frame = new Mat();
-        Mat frameResized = new Mat();
-        MatOfByte buf = new MatOfByte();
-        float minProbability = 0.5f;
-        float threshold = 0.3f;
-        int height;
-        int width;
-        ImageIcon ic;
-        BufferedImage img;
-        MatOfInt indices = new MatOfInt();
-
-        // Загружаем файл с наименованиями классов.
-        String path = "src/yolov4/yolov4.names";
-        List<String> labels = labels(path);
-        int amountOfClasses = labels.size();
-
-        // Генерируем цвет для каждого класса.
-        Scalar[] colors = generateColors(amountOfClasses);
-
-        /// Инициализируем сверточную нейронную сеть.
-        String cfgPath = "src/yolov4/yolov4.cfg";
-        String weightsPath = "src/yolov4/yolov4.weights";
-        Net network = Dnn.readNetFromDarknet(cfgPath, weightsPath);
-        network.setPreferableBackend(Dnn.DNN_BACKEND_CUDA);
-        network.setPreferableTarget(Dnn.DNN_TARGET_CUDA);
-
-
-        // Извлекаем наименования выходных слоев.
-        List<String> outputLayersNames = getOutputLayerNames(network);
-
-        // Извлекаем индексы выходных слоев.
-        MatOfInt outputLayersIndexes = network.getUnconnectedOutLayers();
-        int amountOfOutputLayers = outputLayersIndexes.toArray().length;
-
-        // В бесконечном цикле обрабатываем поступающие кадры из видеопотока.
-        while (true) {
-            // Извлекаем кадр из видеопотока.
-            cap.read(frame);
-            height = frame.height();
-            width = frame.width();
-
-            // Изменяем размер кадра для уменьшения нагрузки на нейронную сеть.
+    public static void main(String[] args) throws InterruptedException, IOException, JMException {
+        Options options = Options.parse(args);
+        PipelineConfig config = readConfig(options);
+        String outPath = options.get("out", OUT_FOLDER);
+
+        // Модели описаны в --models; сети загружаются через реестр уже настроенными и прогретыми.
+        // --precision=fp16|int8 - пониженная точность; для int8 нужны кадры --calibration.
+        Precision precision = Precision.parse(options.get("precision", "fp32"));
+        ModelRegistry registry = new ModelRegistry(ModelRegistry.read(Paths.get(options.get("models", MODELS_PATH))),
+                config::geometry, (network, spec, inputSize) -> configure(options, precision, network, spec, inputSize),
+                Paths.get(options.get("model-cache", ModelRegistry.defaultCache().toString())),
+                precision, calibrationImages(options));
+        String modelName = options.get("model", registry.defaultModel());
+        registry.spec(modelName);
+
+        // Пакетная обработка папки продолжает предыдущий запуск, поэтому папка out
+        // очищается только по --fresh (в любом режиме, чтобы запуск с камерой или видео
+        // не стирал результаты пакетной обработки).
+        if (options.flag("fresh")) {
+            clearFolder(outPath);
+        }
+        if (options.has("input-dir")) {
+            // Экземпляры модели для рабочих потоков загружаются заранее и возвращаются
+            // в реестр после обработки.
+            int workers = options.getInt("workers", Runtime.getRuntime().availableProcessors());
+            List<Model> models = new ArrayList<>();
+            List<FrameDetector> detectors = new ArrayList<>();
             try {
-                Imgproc.resize(frame, frameResized, new Size(256, 256));
-            } catch (Exception e){
-                exit(1);
+                for (int i = 0; i < workers; i++) {
+                    Model model = registry.acquire(modelName);
+                    models.add(model);
+                    detectors.add(new FrameDetector(model.network, model.outputNames, model.geometry,
+                            config.minProbability, config.threshold, config.perClassNms));
+                }
+                new BatchRunner(Paths.get(options.get("input-dir", ".")), Paths.get(outPath), detectors,
+                        models.get(0).labels, models.get(0).colors).run();
+            } finally {
+                for (Model model : models) {
+                    registry.release(model);
+                }
             }
+            return;
+        }
 
+        // Несколько источников обрабатываются пулом сетей.
+        if (options.positional().size() > 1) {
+            runStreams(options, config, registry, modelName);
+            return;
+        }
 
-            // Подаём blob на вход нейронной сети.
-            network.setInput(Dnn.blobFromImage(frameResized, 1 / 255.0));
-
-            // Извлекаем данные с выходных слоев нейронной сети.
-            List<Mat> outputFromNetwork = new ArrayList<>();
-            network.forward(outputFromNetwork, outputLayersNames);
-
-
-            // Обнаруживаем объекты на изображении.
-            List<Integer> classIndexes = new ArrayList<>();
-
-            List<Float> confidencesList = new ArrayList<>();
-            MatOfFloat confidences = new MatOfFloat();
+        // Инициализируем видеопоток: файл, индекс камеры или URL.
+        String source = options.positional().isEmpty()
+                ? "http://192.168.1.92:4444/video_feed"
+                : options.positional().get(0);
+        VideoCapture cap = Yolo.openCapture(source);
 
-            List<Rect2d> boundingBoxesList = new ArrayList<>();
-            MatOfRect2d boundingBoxes = new MatOfRect2d();
+        /// Инициализируем сверточную нейронную сеть.
+        Model model = registry.acquire(modelName);
+        System.out.println("Модель " + model + ": " + model.loadMillis + " мс");
+
+        // Захват, подготовка, инференс, постобработка и отображение работают в отдельных потоках.
+        FrameSink sink = createSink(options, "Window:", 0);
+        DetectionPipeline pipeline = new DetectionPipeline(cap, registry, model, sink, config);
+
+        if (sink instanceof MjpegServer) {
+            MjpegServer mjpeg = (MjpegServer) sink;
+            pipeline.metrics().gauge("mjpeg_clients", mjpeg::clients);
+            pipeline.metrics().counter("mjpeg_encoded", mjpeg::encoded);
+            pipeline.metrics().counter("mjpeg_dropped", mjpeg::dropped);
+        }
 
-            // Проходим через все предсказания из выходных слоёв по очереди.
-            // В цикле проходим через слои:
-            for (Mat output : outputFromNetwork) {
-                // Проходимся по всем предсказаниям.
-                for (int i = 0; i < output.rows(); i++) {
-                    Mat scores = output.row(i).colRange(5, output.cols());
-                    Core.MinMaxLocResult mm = Core.minMaxLoc(scores);
-                    Point classPoint = mm.maxLoc;
-                    double confidence = mm.maxVal;
+        // Метрики доступны через JMX и, если указан --metrics-port, по HTTP в формате Prometheus.
+        MetricsMBean.register(pipeline.metrics(), "detector:type=Pipeline");
+        MetricsServer metricsServer = options.has("metrics-port")
+                ? new MetricsServer(pipeline.metrics(), options.getInt("metrics-port", 9464))
+                : null;
+        // Смена модели на ходу: команда "model <имя>" в консоли или /model?name=<имя>.
+        if (metricsServer != null) {
+            metricsServer.route("/model", query -> query != null && query.startsWith("name=")
+                    ? swapModel(pipeline, query.substring(5))
+                    : "model=" + pipeline.model() + " available=" + registry.names() + "\n");
+        }
+        Thread console = new Thread(() -> readCommands(pipeline, registry), "console");
+        console.setDaemon(true);
+        console.start();
+        // --duration ограничивает время работы (в секундах), например для длительного
+        // прогона по кругу (--loop) с контролем памяти.
+        long durationNanos = options.getLong("duration", 0) * 1_000_000_000L;
+        long started = System.nanoTime();
+        pipeline.start();
+        while (!pipeline.awaitCompletion(5000)) {
+            System.out.println(pipeline.report());
+            if (durationNanos > 0 && System.nanoTime() - started > durationNanos) {
+                break;
+            }
+        }
+        // Останавливаем стадии и дописываем клипы и буфер детекций.
+        pipeline.stop();
+        System.out.println(pipeline.report());
+        if (metricsServer != null) {
+            metricsServer.close();
+        }
+        sink.close();
+        cap.release();
+    }
 
-                    // Фильтруем предсказания по порогу уверенности.
-                    if (confidence > minProbability) {
-                        int centerX = (int) (output.row(i).get(0, 0)[0] * width);
-                        int centerY = (int) (output.row(i).get(0, 1)[0] * height);
-                        int boxWidth = (int) (output.row(i).get(0, 2)[0] * width);
-                        int boxHeight = (int) (output.row(i).get(0, 3)[0] * height);
-                        int left = centerX - boxWidth / 2;
-                        int top = centerY - boxHeight / 2;
+    // Запускает смену модели и сразу возвращает ответ; сама смена идёт в фоне.
+    private static String swapModel(ModelSwitch target, String name) {
+        try {
+            target.swapModel(name).whenComplete((model, error) -> System.out.println(error == null
+                    ? "Активная модель: " + model + " (загрузка " + model.loadMillis + " мс)"
+                    : "Не удалось сменить модель: " + error.getCause()));
+            return "loading " + name + "\n";
+        } catch (IllegalArgumentException e) {
+            return e.getMessage() + "\n";
+        }
+    }
 
-                        classIndexes.add((int) classPoint.x);
-                        confidencesList.add((float) confidence);
-                        boundingBoxesList.add(new Rect2d(left, top, boxWidth, boxHeight));
-                    }
+    // Команды консоли: "model <имя>" - сменить модель, "models" - список моделей.
+    private static void readCommands(ModelSwitch target, ModelRegistry registry) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("model ")) {
+                    System.out.print(swapModel(target, line.substring(6).trim()));
+                } else if (line.equals("models")) {
+                    System.out.println("model=" + target.model() + " available=" + registry.names());
                 }
             }
+        } catch (IOException e) {
+            System.out.println("Консоль недоступна: " + e.getMessage());
+        }
+    }
 
-            // Применяем алгоритм подавления немаксимумов.
-            boundingBoxes.fromList(boundingBoxesList);
-            confidences.fromList(confidencesList);
-            Dnn.NMSBoxes(boundingBoxes, confidences, minProbability, threshold, indices);
-
-
-            // Если алгоритм выявил ограничительные рамки,
-            if (indices.size().height > 0) {
-                List<Integer> indicesList = indices.toList();
-                List<Rect2d> boundingList = boundingBoxes.toList();
-                // то наносим выявленные рамки на изображения.
-                for (int i = 0; i < indicesList.size(); i++) {
-                    // Ограничительная рамка
-                    Rect rect = new Rect(
-                            (int) boundingList.get(indicesList.get(i)).x,
-                            (int) boundingList.get(indicesList.get(i)).y,
-                            (int) boundingList.get(indicesList.get(i)).width,
-                            (int) boundingList.get(indicesList.get(i)).height
-                    );
-
-                    // Извлекаем индекс выявленгого класса (объекта на изображении).
-                    int classIndex = classIndexes.get(indices.toList().get(i));
-
-                    // Наносим ограничительную рамку.
-                    Imgproc.rectangle(frame, rect, colors[classIndex], 2);
-
-                    // Форматируем строку для нанесения на изображение:
-                    // Выявленный клас: вероятность
-                    String label = labels.get(classIndex) + ": " + String.format("%.2f", confidences.toList().get(i));
-                    // Инициализируем точку для нанесения текста.
-                    Point textPoint = new Point(
-                            (int) boundingList.get(indices.toList().get(i)).x,
-                            (int) boundingList.get(indices.toList().get(i)).y - 10
-                    );
-                    // Наносим текст на изображение.
-                    Imgproc.putText(frame, label, textPoint, 1, 1.5, colors[classIndex]);
-                    // System.out.println(label);
-                }
-            }
+    // Обрабатывает все источники из аргументов пулом из --nets экземпляров модели.
+    private static void runStreams(Options options, PipelineConfig config, ModelRegistry registry, String modelName)
+            throws InterruptedException, IOException {
+        List<Model> models = new ArrayList<>();
+        int amountOfNets = options.getInt("nets", Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+        for (int i = 0; i < amountOfNets; i++) {
+            models.add(registry.acquire(modelName));
+        }
 
-            // Преобразуем Mat в BufferedImage для отображения в окне.
-            Imgcodecs.imencode(".png", frame, buf);
-            ic = new ImageIcon(buf.toArray());
+        List<VideoStream> streams = new ArrayList<>();
+        for (String source : options.positional()) {
+            int id = streams.size();
+            streams.add(new VideoStream(id, source, Yolo.openCapture(source),
+                    createSink(options, "Stream " + id + ": " + source, id),
+                    config.queueCapacity, options.has("policy") ? config.defaultPolicy
+                            : filePolicy(source, options.flag("realtime")), options.flag("realtime")));
+        }
 
-            // Отображаем изображение в окне.
-            screen.setIcon(ic);
-            screen.repaint();
-            window.setContentPane(screen);
-            window.pack();
+        DetectionServer server = new DetectionServer(streams, registry, models, config);
+        // Смена модели на ходу для всех потоков: команда "model <имя>" в консоли.
+        Thread console = new Thread(() -> readCommands(server, registry), "console");
+        console.setDaemon(true);
+        console.start();
+        server.start();
+        while (!server.awaitCompletion(5000)) {
+            System.out.println(server.report());
         }
+        System.out.println(server.report());
+        server.stop();
     }
 
-    // Функция для парсинга файла coco.names.
-    public static List<String> labels(String path) {
-        List<String> labels = new ArrayList();
-        try {
-            Scanner scnLabels = new Scanner(new File(path));
-            while (scnLabels.hasNext()) {
-                String label = scnLabels.nextLine();
-                labels.add(label);
+    // Считывает настройки конвейера из параметров командной строки.
+    private static PipelineConfig readConfig(Options options) throws IOException {
+        PipelineConfig config = new PipelineConfig();
+        config.minProbability = options.getFloat("min-probability", config.minProbability);
+        config.threshold = options.getFloat("threshold", config.threshold);
+        config.perClassNms = options.flag("per-class-nms");
+        // Без --size размер входа берётся из cfg каждой модели.
+        config.inputWidth = options.getInt("size", 0);
+        config.inputHeight = options.getInt("size", 0);
+        config.letterbox = !options.flag("stretch");
+        if (options.has("tiles")) {
+            String[] tiles = options.get("tiles", "1x1").split("x");
+            config.tileCols = Integer.parseInt(tiles[0]);
+            config.tileRows = Integer.parseInt(tiles.length > 1 ? tiles[1] : tiles[0]);
+        }
+        config.tileOverlap = options.getFloat("tile-overlap", config.tileOverlap);
+        config.batchSize = options.getInt("batch", config.batchSize);
+        config.batchWaitMillis = options.getLong("batch-wait", config.batchWaitMillis);
+        config.queueCapacity = options.getInt("queue", config.queueCapacity);
+        config.detectEvery = options.getInt("detect-every", config.detectEvery);
+        config.track = options.flag("track") || config.detectEvery > 1;
+        config.latestFrame = options.flag("latest");
+        config.loop = options.flag("loop");
+        config.publishPath = options.get("publish", null);
+        config.publishCapacity = options.getInt("publish-capacity", config.publishCapacity);
+        config.recordDir = options.get("record", null);
+        config.recordClasses = options.get("record-classes", config.recordClasses);
+        config.recordScore = options.getFloat("record-score", config.recordScore);
+        config.recordPreRollSeconds = options.getFloat("pre-roll", (float) config.recordPreRollSeconds);
+        config.recordCooldownSeconds = options.getFloat("cooldown", (float) config.recordCooldownSeconds);
+        config.recordBudgetBytes = options.getLong("record-budget-mb", config.recordBudgetBytes >> 20) << 20;
+        config.recordFps = options.getFloat("record-fps", (float) config.recordFps);
+        config.motionGate = options.has("motion");
+        if (config.motionGate && !options.flag("motion")) {
+            config.motionFraction = options.getFloat("motion", (float) config.motionFraction);
+        }
+        config.maxSkipMillis = options.getLong("max-skip", config.maxSkipMillis);
+        config.latencyBudgetMillis = options.getLong("latency-budget", config.latencyBudgetMillis);
+        // Кадры файла не теряются: без --policy очереди для файлов ждут, а для камер и URL
+        // выбрасывают старые кадры.
+        config.defaultPolicy = options.has("policy")
+                ? OverflowPolicy.parse(options.get("policy", "drop-oldest"))
+                : filePolicy(options.positional().isEmpty() ? "" : options.positional().get(0), false);
+        for (String queue : PipelineConfig.QUEUES) {
+            if (options.has("policy." + queue)) {
+                config.policies.put(queue, OverflowPolicy.parse(options.get("policy." + queue, "")));
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
+        return config;
+    }
 
-        return labels;
+    // Политика очереди по умолчанию для источника: файл, который не читается в реальном
+    // времени, обрабатывается целиком (BLOCK), камера и URL - с выбрасыванием старых кадров.
+    private static OverflowPolicy filePolicy(String source, boolean realtime) {
+        return Yolo.isFile(source) && !realtime ? OverflowPolicy.BLOCK : OverflowPolicy.DROP_OLDEST;
     }
 
-    // Функция для генерации цветов
-    public static Scalar[] generateColors(int amountOfClasses) {
-        Scalar[] colors = new Scalar[amountOfClasses];
-        Random random = new Random();
-        for (int i = 0; i < amountOfClasses; i++) {
-            int r = random.nextInt(256);
-            int g = random.nextInt(256);
-            int b = random.nextInt(256);
-            colors[i] = new Scalar(r, g, b);
-        }
-        return colors;
+    // Настраивает бэкенд сети модели: с --cpu - OpenCV на CPU, иначе выбор автотюнера
+    // (--tune - подобрать заново). Подбор выполняется один раз за запуск для каждой модели,
+    // остальные сети модели получают тот же выбор. С FP16 выбирается вариант устройства
+    // с половинной точностью; квантованная сеть (INT8) работает только на OpenCV/CPU,
+    // поэтому для неё бэкенд не подбирается. Прогревает сеть реестр.
+    private static synchronized void configure(Options options, Precision precision, Net network, ModelSpec spec,
+                                               Size inputSize) {
+        if (options.flag("cpu") || precision == Precision.INT8) {
+            network.setPreferableBackend(Dnn.DNN_BACKEND_OPENCV);
+            network.setPreferableTarget(Dnn.DNN_TARGET_CPU);
+            if (precision == Precision.FP16) {
+                System.out.println("FP16 на CPU не поддерживается, модель " + spec.name + " работает в FP32");
+            }
+            return;
+        }
+        BackendTuner.Choice backend = backends.get(spec.name);
+        if (backend == null) {
+            Path cache = Paths.get(options.get("tune-cache", BackendTuner.defaultCache().toString()));
+            Path file = spec.cfg != null ? spec.cfg : spec.weights;
+            try {
+                backend = new BackendTuner(cache, 2, 5).tune(network, BackendTuner.modelKey(file),
+                        inputSize, options.flag("tune"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            backends.put(spec.name, backend);
+            System.out.println("Бэкенд " + spec.name + ": " + backend);
+        } else {
+            BackendTuner.apply(network, backend);
+        }
+        if (precision == Precision.FP16) {
+            int target = precision.target(backend.backend, backend.target);
+            if (target == backend.target) {
+                System.out.println("FP16 на устройстве " + backend + " не поддерживается, модель " + spec.name
+                        + " работает в FP32");
+            }
+            network.setPreferableTarget(target);
+        }
+    }
+
+    // Первые --calibration-images изображений папки --calibration (для INT8).
+    private static List<Path> calibrationImages(Options options) throws IOException {
+        if (!options.has("calibration")) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.walk(Paths.get(options.get("calibration", ".")))) {
+            return files.filter(BatchRunner::isImage)
+                    .sorted()
+                    .limit(options.getInt("calibration-images", 16))
+                    .collect(Collectors.toList());
+        }
     }
 
-    // Метод для извлечения наименований выходных слоев.
-    public static List<String> getOutputLayerNames(Net network) {
-        List<String> layersNames = network.getLayerNames();
-        List<String> outputLayersNames = new ArrayList<>();
-        List<Integer> unconnectedLayersIndexes = network.getUnconnectedOutLayers().toList();
-        for (int i : unconnectedLayersIndexes) {
-            outputLayersNames.add(layersNames.get(i - 1));
+    // С --mjpeg-port кадры раздаются по HTTP в виде MJPEG; поток index получает порт mjpeg-port + index.
+    private static FrameSink createSink(Options options, String title, int index) throws IOException {
+        if (options.has("mjpeg-port")) {
+            MjpegServer server = new MjpegServer(options.get("mjpeg-host", "127.0.0.1"),
+                    options.getInt("mjpeg-port", 8080) + index, options.getInt("mjpeg-quality", 80),
+                    options.getInt("mjpeg-encoders", 2));
+            System.out.println(title + " MJPEG на порту " + server.port());
+            return server;
         }
-        return outputLayersNames;
+        return options.flag("headless") || GraphicsEnvironment.isHeadless()
+                ? new HeadlessSink()
+                : new SwingSink(title);
     }
 
     // Очищает папку "out"
-    public static void clearFolder() {
-        String folderPath = "/home/senya/IdeaProjects/test/src/out";
+    public static void clearFolder(String folderPath) {
         Path path = Paths.get(folderPath);
-        try {
-            // Рекурсивно обходим все файлы и подпапки внутри папки
-            Stream<Path> walk = Files.walk(path);
+        // Рекурсивно обходим все файлы и подпапки внутри папки
+        try (Stream<Path> walk = Files.exists(path) ? Files.walk(path) : Stream.empty()) {
             // Удаляем каждый файл и подпапку
             walk.sorted(Comparator.reverseOrder())
                     .map(Path::toFile)
@@ -1,3 +1,5 @@
+import detector.BackendTuner;
+import detector.memory.MatArena;
 import org.opencv.core.*;
 import org.opencv.core.Point;
 import org.opencv.dnn.Dnn;
@@ -11,9 +13,13 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
 
+// Прежний последовательный цикл (чтение -> resize -> forward -> разбор -> NMS -> рисование)
+// с камеры 0 в одном потоке. Оставлен как эталон для сравнения с конвейером Main
+// (DetectionPipeline); новые возможности в него не добавляются.
 public class Optimized {
     // Загружаем библиотеку OpenCV, а так же проеверяем версию библиотеки.
     static {
@@ -21,7 +27,7 @@ public class Optimized {
         System.out.println("OpenCV version: " + Core.VERSION);
     }
 
-    public static void main(String[] args) throws InterruptedException {
+    public static void main(String[] args) throws InterruptedException, IOException {
         // Создаем окно для просмотра изображения.
         JFrame window = new JFrame("Window:");
         // Создаем контейнер для изображения.
@@ -58,8 +64,14 @@ public class Optimized {
         String cfgPath = "src/yolov4/yolov4.cfg";
         String weightsPath = "src/yolov4/yolov4.weights";
         Net network = Dnn.readNetFromDarknet(cfgPath, weightsPath);
-        network.setPreferableBackend(Dnn.DNN_BACKEND_CUDA);
-        network.setPreferableTarget(Dnn.DNN_TARGET_CUDA);
+        // Размер входа сети: кадр уменьшается до него перед подачей в сеть.
+        Size inputSize = new Size(256, 256);
+        // Бэкенд и устройство выбирает автотюнер (выбор сохраняется между запусками
+        // для этой модели и этого размера входа).
+        BackendTuner.Choice backend = new BackendTuner(BackendTuner.defaultCache(), 2, 5)
+                .tune(network, BackendTuner.modelKey(Paths.get(cfgPath)), inputSize, false);
+        System.out.println("Бэкенд: " + backend);
+        BackendTuner.warmUp(network, inputSize, 2);
 
 
         // Извлекаем наименования выходных слоев.
@@ -69,6 +81,10 @@ public class Optimized {
         MatOfInt outputLayersIndexes = network.getUnconnectedOutLayers();
         int amountOfOutputLayers = outputLayersIndexes.toArray().length;
 
+        // Временные матрицы итерации (blob, выходы сети, строки выходов, входы NMS)
+        // освобождаются в конце каждой итерации.
+        MatArena arena = new MatArena();
+
         // В бесконечном цикле обрабатываем поступающие кадры из видеопотока.
         while (true) {
             // Извлекаем кадр из видеопотока.
@@ -77,24 +93,25 @@ public class Optimized {
             width = frame.width();
 
             // Изменяем размер кадра для уменьшения нагрузки на нейронную сеть.
-            Imgproc.resize(frame, frameResized, new Size(256, 256));
+            Imgproc.resize(frame, frameResized, inputSize);
 
             // Подаём blob на вход нейронной сети.
-            network.setInput(Dnn.blobFromImage(frameResized, 1 / 255.0));
+            network.setInput(arena.track(Dnn.blobFromImage(frameResized, 1 / 255.0)));
 
             // Извлекаем данные с выходных слоев нейронной сети.
             List<Mat> outputFromNetwork = new ArrayList<>();
             network.forward(outputFromNetwork, outputLayersNames);
+            arena.trackAll(outputFromNetwork);
 
 
             // Обнаруживаем объекты на изображении.
             List<Integer> classIndexes = new ArrayList<>();
 
             List<Float> confidencesList = new ArrayList<>();
-            MatOfFloat confidences = new MatOfFloat();
+            MatOfFloat confidences = arena.track(new MatOfFloat());
 
             List<Rect2d> boundingBoxesList = new ArrayList<>();
-            MatOfRect2d boundingBoxes = new MatOfRect2d();
+            MatOfRect2d boundingBoxes = arena.track(new MatOfRect2d());
 
             /* Координаты обнаруженных ограничительных рамок будут записыватся в список,
                а за тем конвертироватся MatOfRect2d. */
@@ -114,17 +131,18 @@ public class Optimized {
             for (Mat output : outputFromNetwork) {
                 // Проходимся по всем предсказаниям.
                 for (int i = 0; i < output.rows(); i++) {
-                    Mat scores = output.row(i).colRange(5, output.cols());
+                    Mat row = arena.track(output.row(i));
+                    Mat scores = arena.track(row.colRange(5, output.cols()));
                     Core.MinMaxLocResult mm = Core.minMaxLoc(scores);
                     Point classPoint = mm.maxLoc;
                     double confidence = mm.maxVal;
 
                     // Фильтруем предсказания по порогу уверенности.
                     if (confidence > minProbability) {
-                        int centerX = (int) (output.row(i).get(0, 0)[0] * width);
-                        int centerY = (int) (output.row(i).get(0, 1)[0] * height);
-                        int boxWidth = (int) (output.row(i).get(0, 2)[0] * width);
-                        int boxHeight = (int) (output.row(i).get(0, 3)[0] * height);
+                        int centerX = (int) (row.get(0, 0)[0] * width);
+                        int centerY = (int) (row.get(0, 1)[0] * height);
+                        int boxWidth = (int) (row.get(0, 2)[0] * width);
+                        int boxHeight = (int) (row.get(0, 3)[0] * height);
                         int left = centerX - boxWidth / 2;
                         int top = centerY - boxHeight / 2;
 
@@ -188,6 +206,7 @@ public class Optimized {
             screen.repaint();
             window.setContentPane(screen);
             window.pack();
+            arena.release();
         }
     }
 
@@ -0,0 +1,273 @@
+package detector;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.dnn.Dnn;
+import org.opencv.dnn.Net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+// Выбор бэкенда, устройства и числа потоков OpenCV для сети.
+// Перебираются пары бэкенд/устройство, которые сообщает Dnn.getAvailableTargets;
+// для каждой выполняется несколько прогревочных forward на входе нужного размера,
+// затем замеряется медиана нескольких forward, и выбирается самая быстрая пара.
+// Для CPU так же подбирается число потоков (Core.setNumThreads).
+// Результат сохраняется в файл по ключу хост/модель/размер входа/версия OpenCV,
+// поэтому следующие запуски пропускают перебор; прогрев сети остаётся вызывающему (warmUp).
+// Число потоков OpenCV - общее для процесса: сохраняется оно для модели, но действует на все
+// сети процесса, и при нескольких моделях с разным выбором побеждает последний применённый.
+public class BackendTuner {
+    private static final int[] BACKENDS = {
+            Dnn.DNN_BACKEND_CUDA, Dnn.DNN_BACKEND_INFERENCE_ENGINE, Dnn.DNN_BACKEND_OPENCV,
+            Dnn.DNN_BACKEND_VKCOM, Dnn.DNN_BACKEND_HALIDE
+    };
+
+    private final Path cache;
+    private final int warmup;
+    private final int runs;
+
+    // Выбранная конфигурация и время одного forward на ней.
+    public static class Choice {
+        public final int backend;
+        public final int target;
+        public final int threads;
+        public final double millis;
+
+        public Choice(int backend, int target, int threads, double millis) {
+            this.backend = backend;
+            this.target = target;
+            this.threads = threads;
+            this.millis = millis;
+        }
+
+        static Choice parse(String value) {
+            String[] parts = value.split(",");
+            return new Choice(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2]), Double.parseDouble(parts[3]));
+        }
+
+        String format() {
+            return backend + "," + target + "," + threads + "," + millis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s/%s threads=%d forward=%.1fms",
+                    backendName(backend), targetName(target), threads, millis);
+        }
+    }
+
+    // Модель в ключе выбора - полный путь к её файлу, чтобы разные модели с одинаковым
+    // именем файла (model.cfg в разных папках) не делили один выбор.
+    public static String modelKey(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    // Файл с сохранёнными выборами по умолчанию.
+    public static Path defaultCache() {
+        return Paths.get(System.getProperty("user.home"), ".imgproccesing", "backends.properties");
+    }
+
+    public BackendTuner(Path cache, int warmup, int runs) {
+        this.cache = cache;
+        this.warmup = warmup;
+        this.runs = runs;
+    }
+
+    // Настраивает сеть: берёт сохранённый выбор для model или подбирает его заново
+    // (всегда, если force). Сохранённый выбор только применяется - без прогревочных forward.
+    public Choice tune(Net network, String model, Size inputSize, boolean force) throws IOException {
+        String key = key(model, inputSize);
+        Properties saved = load();
+        if (!force && saved.containsKey(key)) {
+            Choice choice = Choice.parse(saved.getProperty(key));
+            apply(network, choice);
+            return choice;
+        }
+
+        Choice best = null;
+        for (int backend : BACKENDS) {
+            for (int target : Dnn.getAvailableTargets(backend)) {
+                // Половинная точность меняет результат, её выбирают явно.
+                if (target == Dnn.DNN_TARGET_CUDA_FP16 || target == Dnn.DNN_TARGET_OPENCL_FP16) {
+                    continue;
+                }
+                Choice choice = measure(network, inputSize, backend, target, Core.getNumThreads());
+                System.out.println("Бэкенд " + (choice == null ? backendName(backend) + "/" + targetName(target)
+                        + " недоступен" : choice));
+                if (choice != null && (best == null || choice.millis < best.millis)) {
+                    best = choice;
+                }
+            }
+        }
+        if (best == null) {
+            best = new Choice(Dnn.DNN_BACKEND_OPENCV, Dnn.DNN_TARGET_CPU, Core.getNumThreads(), 0);
+        }
+
+        // На CPU подбираем число потоков OpenCV.
+        if (best.target == Dnn.DNN_TARGET_CPU) {
+            int cpus = Runtime.getRuntime().availableProcessors();
+            for (int threads : new int[]{1, Math.max(1, cpus / 2), cpus}) {
+                if (threads == best.threads) {
+                    continue;
+                }
+                Choice choice = measure(network, inputSize, best.backend, best.target, threads);
+                if (choice != null) {
+                    System.out.println("Потоков " + threads + ": " + choice);
+                    if (choice.millis < best.millis) {
+                        best = choice;
+                    }
+                }
+            }
+        }
+
+        apply(network, best);
+        saved.setProperty(key, best.format());
+        save(saved);
+        return best;
+    }
+
+    // Время forward на паре бэкенд/устройство или null, если она не работает.
+    private Choice measure(Net network, Size inputSize, int backend, int target, int threads) {
+        Mat blob = null;
+        List<Mat> outputs = new ArrayList<>();
+        try {
+            apply(network, new Choice(backend, target, threads, 0));
+            warmUp(network, inputSize, warmup);
+            blob = blob(inputSize);
+            List<String> names = Yolo.getOutputLayerNames(network);
+            double[] millis = new double[runs];
+            for (int i = 0; i < runs; i++) {
+                long start = System.nanoTime();
+                network.setInput(blob);
+                network.forward(outputs, names);
+                millis[i] = (System.nanoTime() - start) / 1e6;
+                release(outputs);
+            }
+            Arrays.sort(millis);
+            return new Choice(backend, target, threads, millis[runs / 2]);
+        } catch (Exception e) {
+            // Неработающая пара - обычный случай при переборе.
+            return null;
+        } finally {
+            if (blob != null) {
+                blob.release();
+            }
+            release(outputs);
+        }
+    }
+
+    public static void apply(Net network, Choice choice) {
+        Core.setNumThreads(choice.threads);
+        network.setPreferableBackend(choice.backend);
+        network.setPreferableTarget(choice.target);
+    }
+
+    // Несколько forward на сером кадре: первый запуск выделяет память и инициализирует слои.
+    public static void warmUp(Net network, Size inputSize, int forwards) {
+        Mat blob = blob(inputSize);
+        List<Mat> outputs = new ArrayList<>();
+        try {
+            List<String> names = Yolo.getOutputLayerNames(network);
+            for (int i = 0; i < forwards; i++) {
+                network.setInput(blob);
+                network.forward(outputs, names);
+                release(outputs);
+            }
+        } finally {
+            blob.release();
+            release(outputs);
+        }
+    }
+
+    private static Mat blob(Size inputSize) {
+        Mat image = new Mat(inputSize, CvType.CV_8UC3, new Scalar(127, 127, 127));
+        Mat blob = Dnn.blobFromImage(image, 1 / 255.0);
+        image.release();
+        return blob;
+    }
+
+    private static void release(List<Mat> outputs) {
+        for (Mat output : outputs) {
+            output.release();
+        }
+        outputs.clear();
+    }
+
+    private static String key(String model, Size inputSize) {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = System.getenv().getOrDefault("HOSTNAME", "localhost");
+        }
+        return host + "/" + model + "/" + (int) inputSize.width + "x" + (int) inputSize.height
+                + "/" + Core.VERSION;
+    }
+
+    private Properties load() throws IOException {
+        Properties properties = new Properties();
+        if (Files.exists(cache)) {
+            try (InputStream in = Files.newInputStream(cache)) {
+                properties.load(in);
+            }
+        }
+        return properties;
+    }
+
+    private void save(Properties properties) throws IOException {
+        if (cache.getParent() != null) {
+            Files.createDirectories(cache.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(cache)) {
+            properties.store(out, "backend,target,threads,forward ms");
+        }
+    }
+
+    static String backendName(int backend) {
+        if (backend == Dnn.DNN_BACKEND_CUDA) {
+            return "CUDA";
+        } else if (backend == Dnn.DNN_BACKEND_INFERENCE_ENGINE) {
+            return "OpenVINO";
+        } else if (backend == Dnn.DNN_BACKEND_OPENCV) {
+            return "OpenCV";
+        } else if (backend == Dnn.DNN_BACKEND_VKCOM) {
+            return "Vulkan";
+        } else if (backend == Dnn.DNN_BACKEND_HALIDE) {
+            return "Halide";
+        }
+        return String.valueOf(backend);
+    }
+
+    static String targetName(int target) {
+        if (target == Dnn.DNN_TARGET_CPU) {
+            return "CPU";
+        } else if (target == Dnn.DNN_TARGET_OPENCL) {
+            return "OpenCL";
+        } else if (target == Dnn.DNN_TARGET_OPENCL_FP16) {
+            return "OpenCL-FP16";
+        } else if (target == Dnn.DNN_TARGET_CUDA) {
+            return "CUDA";
+        } else if (target == Dnn.DNN_TARGET_CUDA_FP16) {
+            return "CUDA-FP16";
+        } else if (target == Dnn.DNN_TARGET_MYRIAD) {
+            return "Myriad";
+        } else if (target == Dnn.DNN_TARGET_VULKAN) {
+            return "Vulkan";
+        }
+        return String.valueOf(target);
+    }
+}
@@ -0,0 +1,75 @@
+package detector;
+
+import java.util.Arrays;
+
+// Результаты детекции в примитивных массивах, которые растут по мере надобности
+// и переиспользуются между кадрами.
+public class Detections {
+    public int[] classIds;
+    public float[] scores;
+    // Левый верхний угол, ширина и высота рамки в координатах кадра.
+    public float[] x;
+    public float[] y;
+    public float[] w;
+    public float[] h;
+    private int size;
+
+    public Detections() {
+        this(64);
+    }
+
+    public Detections(int capacity) {
+        classIds = new int[capacity];
+        scores = new float[capacity];
+        x = new float[capacity];
+        y = new float[capacity];
+        w = new float[capacity];
+        h = new float[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(int classId, float score, float left, float top, float width, float height) {
+        if (size == scores.length) {
+            grow(size + 1);
+        }
+        classIds[size] = classId;
+        scores[size] = score;
+        x[size] = left;
+        y[size] = top;
+        w[size] = width;
+        h[size] = height;
+        size++;
+    }
+
+    // Дописывает в конец все детекции из other.
+    public void addAll(Detections other) {
+        int n = other.size;
+        if (size + n > scores.length) {
+            grow(size + n);
+        }
+        System.arraycopy(other.classIds, 0, classIds, size, n);
+        System.arraycopy(other.scores, 0, scores, size, n);
+        System.arraycopy(other.x, 0, x, size, n);
+        System.arraycopy(other.y, 0, y, size, n);
+        System.arraycopy(other.w, 0, w, size, n);
+        System.arraycopy(other.h, 0, h, size, n);
+        size += n;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, scores.length * 2);
+        classIds = Arrays.copyOf(classIds, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        w = Arrays.copyOf(w, capacity);
+        h = Arrays.copyOf(h, capacity);
+    }
+}
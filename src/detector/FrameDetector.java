@@ -0,0 +1,57 @@
+package detector;
+
+import detector.memory.MatArena;
+import org.opencv.core.Mat;
+import org.opencv.dnn.Net;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Полный цикл детекции одного кадра в вызывающем потоке:
+// подготовка входа (InputGeometry), blob, forward, разбор выходов и подавление немаксимумов.
+// Экземпляр владеет сетью и буферами и не потокобезопасен.
+public class FrameDetector {
+    private final Net network;
+    private final List<String> outputLayersNames;
+    private final InputGeometry geometry;
+    private final float minProbability;
+    private final float threshold;
+    private final boolean perClassNms;
+    private final YoloDecoder decoder = new YoloDecoder();
+    private final Nms nms = new Nms();
+    private final Detections detections = new Detections();
+    private final List<Mat> inputs = new ArrayList<>();
+    private final List<Mat> outputs = new ArrayList<>();
+    // Blob и выходы текущего кадра.
+    private final MatArena arena = new MatArena();
+
+    public FrameDetector(Net network, List<String> outputLayersNames, InputGeometry geometry,
+                         float minProbability, float threshold, boolean perClassNms) {
+        this.network = network;
+        this.outputLayersNames = outputLayersNames;
+        this.geometry = geometry;
+        this.minProbability = minProbability;
+        this.threshold = threshold;
+        this.perClassNms = perClassNms;
+    }
+
+    // Возвращает индексы оставленных детекций; сами детекции доступны через detections().
+    public int[] detect(Mat frame) {
+        network.setInput(arena.track(geometry.blob(frame, inputs)));
+        network.forward(outputs, outputLayersNames);
+        arena.trackAll(outputs);
+
+        detections.clear();
+        try {
+            geometry.decode(decoder, outputs, frame.width(), frame.height(), minProbability, detections);
+        } finally {
+            arena.release();
+            outputs.clear();
+        }
+        return nms.suppress(detections, minProbability, threshold, perClassNms);
+    }
+
+    public Detections detections() {
+        return detections;
+    }
+}
@@ -0,0 +1,229 @@
+package detector;
+
+import detector.memory.MatArena;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.dnn.Dnn;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Геометрия входа сети: размер входа, способ масштабирования и разбиение кадра на тайлы.
+// При letterbox кадр уменьшается с сохранением пропорций и дополняется серыми полями,
+// иначе растягивается на весь вход. В режиме тайлов кадр делится на cols x rows
+// перекрывающихся областей; к ним добавляется весь кадр целиком, чтобы крупные объекты
+// не резались на части. Все области подаются в сеть одним пакетом, рамки переводятся
+// в координаты кадра, а дубликаты на стыках убирает общее подавление немаксимумов.
+// Сам объект неизменяем; буферы для областей передаёт вызывающий поток.
+public class InputGeometry {
+    private static final Scalar PADDING = new Scalar(127, 127, 127);
+
+    public final int width;
+    public final int height;
+    public final boolean letterbox;
+    public final int tileCols;
+    public final int tileRows;
+    // Доля перекрытия соседних тайлов.
+    public final float overlap;
+
+    // Области последнего размера кадра (области зависят только от размера).
+    private volatile Region[] cached = new Region[0];
+
+    // Область кадра и её преобразование во вход сети:
+    // вход = (кадр - (x, y)) * scale + pad.
+    public static class Region {
+        public final int x;
+        public final int y;
+        public final int width;
+        public final int height;
+        public final double scaleX;
+        public final double scaleY;
+        public final int padX;
+        public final int padY;
+        public final int resizedWidth;
+        public final int resizedHeight;
+        private final int frameWidth;
+        private final int frameHeight;
+
+        Region(int x, int y, int width, int height, InputGeometry geometry, int frameWidth, int frameHeight) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.frameWidth = frameWidth;
+            this.frameHeight = frameHeight;
+            if (geometry.letterbox) {
+                double scale = Math.min(geometry.width / (double) width, geometry.height / (double) height);
+                resizedWidth = Math.max(1, (int) Math.round(width * scale));
+                resizedHeight = Math.max(1, (int) Math.round(height * scale));
+            } else {
+                resizedWidth = geometry.width;
+                resizedHeight = geometry.height;
+            }
+            scaleX = resizedWidth / (double) width;
+            scaleY = resizedHeight / (double) height;
+            padX = (geometry.width - resizedWidth) / 2;
+            padY = (geometry.height - resizedHeight) / 2;
+        }
+    }
+
+    public InputGeometry(int width, int height, boolean letterbox, int tileCols, int tileRows, float overlap) {
+        this.width = width;
+        this.height = height;
+        this.letterbox = letterbox;
+        this.tileCols = Math.max(1, tileCols);
+        this.tileRows = Math.max(1, tileRows);
+        this.overlap = overlap;
+    }
+
+    // Вход width x height без тайлов.
+    public InputGeometry(int width, int height, boolean letterbox) {
+        this(width, height, letterbox, 1, 1, 0);
+    }
+
+    public boolean tiled() {
+        return tileCols * tileRows > 1;
+    }
+
+    // Число областей кадра, то есть размер пакета для одного кадра.
+    public int regionCount() {
+        return tiled() ? tileCols * tileRows + 1 : 1;
+    }
+
+    // Области кадра frameWidth x frameHeight: тайлы по строкам, затем весь кадр.
+    public Region[] regions(int frameWidth, int frameHeight) {
+        Region[] regions = cached;
+        if (regions.length > 0 && regions[0].frameWidth == frameWidth && regions[0].frameHeight == frameHeight) {
+            return regions;
+        }
+        regions = new Region[regionCount()];
+        if (!tiled()) {
+            regions[0] = new Region(0, 0, frameWidth, frameHeight, this, frameWidth, frameHeight);
+        } else {
+            int[] xs = tileStarts(frameWidth, tileCols);
+            int[] ys = tileStarts(frameHeight, tileRows);
+            int tileWidth = tileSize(frameWidth, tileCols);
+            int tileHeight = tileSize(frameHeight, tileRows);
+            int i = 0;
+            for (int row = 0; row < tileRows; row++) {
+                for (int col = 0; col < tileCols; col++) {
+                    regions[i++] = new Region(xs[col], ys[row], tileWidth, tileHeight, this,
+                            frameWidth, frameHeight);
+                }
+            }
+            regions[i] = new Region(0, 0, frameWidth, frameHeight, this, frameWidth, frameHeight);
+        }
+        cached = regions;
+        return regions;
+    }
+
+    // Размер тайла, при котором count тайлов с перекрытием overlap покрывают length.
+    private int tileSize(int length, int count) {
+        return Math.min(length, (int) Math.ceil(length / (count - (count - 1) * overlap)));
+    }
+
+    private int[] tileStarts(int length, int count) {
+        int size = tileSize(length, count);
+        int[] starts = new int[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = count == 1 ? 0 : (int) Math.round(i * (length - size) / (double) (count - 1));
+        }
+        return starts;
+    }
+
+    // Записывает в dst вход сети для области кадра.
+    public void prepare(Mat frame, Region region, Mat dst) {
+        Mat source = region.width == frame.cols() && region.height == frame.rows()
+                ? frame
+                : frame.submat(new Rect(region.x, region.y, region.width, region.height));
+        if (region.padX == 0 && region.padY == 0) {
+            Imgproc.resize(source, dst, new Size(width, height));
+        } else {
+            // Кадр уменьшается прямо в середину dst, поэтому буфер dst переиспользуется
+            // между кадрами и промежуточная матрица не нужна.
+            dst.create(height, width, frame.type());
+            dst.setTo(PADDING);
+            Mat inner = dst.submat(new Rect(region.padX, region.padY, region.resizedWidth, region.resizedHeight));
+            Imgproc.resize(source, inner, inner.size());
+            inner.release();
+        }
+        if (source != frame) {
+            source.release();
+        }
+    }
+
+    // Blob всех областей кадра. inputs - переиспользуемые матрицы вызывающего потока.
+    public Mat blob(Mat frame, List<Mat> inputs) {
+        return blob(inputs, prepare(frame, inputs));
+    }
+
+    // Записывает входы всех областей кадра в начало inputs; возвращает их число.
+    public int prepare(Mat frame, List<Mat> inputs) {
+        Region[] regions = regions(frame.cols(), frame.rows());
+        while (inputs.size() < regions.length) {
+            inputs.add(new Mat());
+        }
+        for (int i = 0; i < regions.length; i++) {
+            prepare(frame, regions[i], inputs.get(i));
+        }
+        return regions.length;
+    }
+
+    // Blob из первых count входов.
+    public static Mat blob(List<Mat> inputs, int count) {
+        if (count == 1) {
+            return Dnn.blobFromImage(inputs.get(0), 1 / 255.0);
+        }
+        return Dnn.blobFromImages(inputs.subList(0, count), 1 / 255.0);
+    }
+
+    // Разбирает выходы сети для кадра frameWidth x frameHeight и дописывает в out рамки
+    // в координатах кадра. Выход слоя имеет форму [области, строки, столбцы]
+    // (или [строки, столбцы] для одной области).
+    public void decode(YoloDecoder decoder, List<Mat> outputs, int frameWidth, int frameHeight,
+                       float minProbability, Detections out) {
+        Region[] regions = regions(frameWidth, frameHeight);
+        if (regions.length == 1) {
+            decode(decoder, outputs, regions[0], minProbability, out);
+            return;
+        }
+        List<Mat> flat = new ArrayList<>();
+        List<Mat> views = new ArrayList<>();
+        try (MatArena arena = new MatArena()) {
+            for (Mat output : outputs) {
+                int cols = output.size(output.dims() - 1);
+                flat.add(arena.track(output.reshape(1, (int) (output.total() / cols))));
+            }
+            for (int i = 0; i < regions.length; i++) {
+                for (Mat layer : flat) {
+                    int rowsPerRegion = layer.rows() / regions.length;
+                    views.add(arena.track(layer.rowRange(i * rowsPerRegion, (i + 1) * rowsPerRegion)));
+                }
+                decode(decoder, views, regions[i], minProbability, out);
+                views.clear();
+            }
+        }
+    }
+
+    // Декодер сразу пересчитывает рамки в пиксели кадра: размером считается весь вход сети
+    // вместе с полями в масштабе кадра, после чего рамки сдвигаются на начало области
+    // за вычетом поля.
+    private void decode(YoloDecoder decoder, List<Mat> outputs, Region region, float minProbability,
+                        Detections out) {
+        int from = out.size();
+        decoder.decode(outputs, (int) Math.round(width / region.scaleX), (int) Math.round(height / region.scaleY),
+                minProbability, out);
+        float dx = (float) (region.x - region.padX / region.scaleX);
+        float dy = (float) (region.y - region.padY / region.scaleY);
+        if (dx == 0 && dy == 0) {
+            return;
+        }
+        for (int i = from; i < out.size(); i++) {
+            out.x[i] += dx;
+            out.y[i] += dy;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package detector;
+
+import java.util.Arrays;
+
+// Подавление немаксимумов на примитивных массивах, без матриц OpenCV.
+// Результат совпадает с Dnn.NMSBoxes для Rect2d: рамки с оценкой больше scoreThreshold
+// сортируются по убыванию оценки (при равенстве - по индексу), и рамка остаётся,
+// если её IoU со всеми уже оставленными рамками не больше nmsThreshold.
+// При большом числе кандидатов оставленные рамки раскладываются по равномерной сетке,
+// и каждый кандидат сравнивается только с рамками из пересекаемых им ячеек.
+// При подавлении внутри класса кандидаты сначала раскладываются по классам.
+// Экземпляр переиспользует буферы и не потокобезопасен.
+public class Nms {
+    // Число кандидатов, начиная с которого используется сетка.
+    static final int GRID_MIN_CANDIDATES = 512;
+    // Наибольшее число ячеек по одной оси.
+    private static final int MAX_GRID_SIDE = 128;
+    // Рамки, покрывающие больше ячеек, хранятся в отдельном списке.
+    private static final int MAX_CELLS_PER_BOX = 64;
+
+    private long[] order = new long[0];
+    private int[] sorted = new int[0];
+    private int[] kept = new int[0];
+
+    // Раскладка кандидатов по классам для подавления внутри класса.
+    private int[] classStart = new int[0];
+    private int[] byClass = new int[0];
+    private boolean[] keep = new boolean[0];
+
+    // Сетка: списки оставленных рамок по ячейкам, хранящиеся в массивах.
+    private int[] cellHead = new int[0];
+    private int[] entryNext = new int[0];
+    private int[] entryBox = new int[0];
+    private int[] large = new int[0];
+    private int[] stamp = new int[0];
+
+    public int[] suppress(Detections detections, float scoreThreshold, float nmsThreshold, boolean perClass) {
+        return suppress(detections.x, detections.y, detections.w, detections.h, detections.scores,
+                detections.classIds, detections.size(), scoreThreshold, nmsThreshold, perClass);
+    }
+
+    // Возвращает индексы оставленных рамок в порядке убывания оценки.
+    // Если perClass, рамки подавляют друг друга только внутри одного класса.
+    public int[] suppress(float[] x, float[] y, float[] w, float[] h, float[] scores, int[] classIds, int n,
+                          float scoreThreshold, float nmsThreshold, boolean perClass) {
+        int m = sortByScore(scores, n, scoreThreshold);
+        if (sorted.length < m) {
+            sorted = new int[m];
+            kept = new int[m];
+        }
+        for (int i = 0; i < m; i++) {
+            sorted[i] = (int) order[i];
+        }
+        if (!perClass) {
+            return Arrays.copyOf(kept, suppressRange(x, y, w, h, sorted, 0, m, nmsThreshold));
+        }
+
+        // Раскладываем кандидатов по классам, сохраняя порядок по оценке внутри класса.
+        int classes = 0;
+        for (int i = 0; i < m; i++) {
+            classes = Math.max(classes, classIds[sorted[i]] + 1);
+        }
+        if (classStart.length < classes + 1) {
+            classStart = new int[classes + 1];
+        }
+        Arrays.fill(classStart, 0, classes + 1, 0);
+        for (int i = 0; i < m; i++) {
+            classStart[classIds[sorted[i]] + 1]++;
+        }
+        for (int c = 0; c < classes; c++) {
+            classStart[c + 1] += classStart[c];
+        }
+        if (byClass.length < m) {
+            byClass = new int[m];
+        }
+        for (int i = 0; i < m; i++) {
+            int classId = classIds[sorted[i]];
+            byClass[classStart[classId]++] = sorted[i];
+        }
+
+        // Подавляем внутри каждого класса и отмечаем оставленные рамки.
+        if (keep.length < n) {
+            keep = new boolean[n];
+        }
+        int from = 0;
+        for (int c = 0; c < classes; c++) {
+            int to = classStart[c];
+            int count = suppressRange(x, y, w, h, byClass, from, to, nmsThreshold);
+            for (int k = 0; k < count; k++) {
+                keep[kept[k]] = true;
+            }
+            from = to;
+        }
+
+        // Собираем результат в общем порядке убывания оценки.
+        int count = 0;
+        for (int i = 0; i < m; i++) {
+            int index = sorted[i];
+            if (keep[index]) {
+                keep[index] = false;
+                kept[count++] = index;
+            }
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    // Подавляет кандидатов candidates[from..to), уже отсортированных по убыванию оценки.
+    // Оставленные индексы записываются в начало kept.
+    private int suppressRange(float[] x, float[] y, float[] w, float[] h, int[] candidates, int from, int to,
+                              float nmsThreshold) {
+        boolean degenerate = false;
+        for (int i = from; i < to && !degenerate; i++) {
+            degenerate = w[candidates[i]] <= 0 || h[candidates[i]] <= 0;
+        }
+        if (to - from < GRID_MIN_CANDIDATES || degenerate) {
+            return suppressAll(x, y, w, h, candidates, from, to, nmsThreshold);
+        }
+        return suppressGrid(x, y, w, h, candidates, from, to, nmsThreshold);
+    }
+
+    // Отбирает кандидатов по порогу и сортирует их по убыванию оценки.
+    // В старших 32 битах ключа - оценка, в младших - индекс, поэтому сортировка устойчива.
+    private int sortByScore(float[] scores, int n, float scoreThreshold) {
+        if (order.length < n) {
+            order = new long[n];
+        }
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (scores[i] > scoreThreshold) {
+                int bits = Float.floatToIntBits(scores[i]);
+                bits ^= (bits >> 31) & 0x7fffffff;
+                order[m++] = ((long) ~bits << 32) | i;
+            }
+        }
+        Arrays.sort(order, 0, m);
+        return m;
+    }
+
+    // Сравнивает каждого кандидата со всеми оставленными рамками.
+    private int suppressAll(float[] x, float[] y, float[] w, float[] h, int[] candidates, int from, int to,
+                            float nmsThreshold) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int index = candidates[i];
+            boolean keep = true;
+            for (int k = 0; k < count && keep; k++) {
+                keep = overlap(x, y, w, h, index, kept[k]) <= nmsThreshold;
+            }
+            if (keep) {
+                kept[count++] = index;
+            }
+        }
+        return count;
+    }
+
+    private int suppressGrid(float[] x, float[] y, float[] w, float[] h, int[] candidates, int from, int to,
+                             float nmsThreshold) {
+        int m = to - from;
+        // Размер ячейки - средний размер рамки, но не больше MAX_GRID_SIDE ячеек по оси.
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        double sumSize = 0;
+        for (int i = from; i < to; i++) {
+            int index = candidates[i];
+            minX = Math.min(minX, x[index]);
+            minY = Math.min(minY, y[index]);
+            maxX = Math.max(maxX, x[index] + w[index]);
+            maxY = Math.max(maxY, y[index] + h[index]);
+            sumSize += Math.max(w[index], h[index]);
+        }
+        float cell = Math.max((float) (sumSize / m),
+                Math.max(maxX - minX, maxY - minY) / MAX_GRID_SIDE);
+        int cols = Math.min(MAX_GRID_SIDE, (int) ((maxX - minX) / cell) + 1);
+        int rows = Math.min(MAX_GRID_SIDE, (int) ((maxY - minY) / cell) + 1);
+
+        if (cellHead.length < cols * rows) {
+            cellHead = new int[cols * rows];
+        }
+        Arrays.fill(cellHead, 0, cols * rows, -1);
+        if (stamp.length < m) {
+            stamp = new int[m];
+        }
+        Arrays.fill(stamp, 0, m, from - 1);
+        int entries = 0;
+        int largeCount = 0;
+
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int index = candidates[i];
+            int x0 = Math.min(cols - 1, (int) ((x[index] - minX) / cell));
+            int y0 = Math.min(rows - 1, (int) ((y[index] - minY) / cell));
+            int x1 = Math.min(cols - 1, (int) ((x[index] + w[index] - minX) / cell));
+            int y1 = Math.min(rows - 1, (int) ((y[index] + h[index] - minY) / cell));
+            boolean isLarge = (x1 - x0 + 1) * (y1 - y0 + 1) > MAX_CELLS_PER_BOX;
+
+            boolean keep = true;
+            if (isLarge) {
+                // Большой кандидат дешевле сравнить со всеми оставленными рамками.
+                for (int k = 0; k < count && keep; k++) {
+                    keep = overlap(x, y, w, h, index, kept[k]) <= nmsThreshold;
+                }
+            } else {
+                for (int k = 0; k < largeCount && keep; k++) {
+                    keep = overlap(x, y, w, h, index, kept[large[k]]) <= nmsThreshold;
+                }
+                for (int cy = y0; cy <= y1 && keep; cy++) {
+                    for (int cx = x0; cx <= x1 && keep; cx++) {
+                        for (int e = cellHead[cy * cols + cx]; e >= 0 && keep; e = entryNext[e]) {
+                            int k = entryBox[e];
+                            // Рамка может лежать в нескольких ячейках - сравниваем её один раз.
+                            if (stamp[k] != i) {
+                                stamp[k] = i;
+                                keep = overlap(x, y, w, h, index, kept[k]) <= nmsThreshold;
+                            }
+                        }
+                    }
+                }
+            }
+            if (!keep) {
+                continue;
+            }
+
+            // Регистрируем оставленную рамку в сетке.
+            if (isLarge) {
+                if (large.length == largeCount) {
+                    large = Arrays.copyOf(large, Math.max(16, largeCount * 2));
+                }
+                large[largeCount++] = count;
+            } else {
+                int cells = (x1 - x0 + 1) * (y1 - y0 + 1);
+                if (entryBox.length < entries + cells) {
+                    int capacity = Math.max(entries + cells, entryBox.length * 2);
+                    entryBox = Arrays.copyOf(entryBox, capacity);
+                    entryNext = Arrays.copyOf(entryNext, capacity);
+                }
+                for (int cy = y0; cy <= y1; cy++) {
+                    for (int cx = x0; cx <= x1; cx++) {
+                        entryBox[entries] = count;
+                        entryNext[entries] = cellHead[cy * cols + cx];
+                        cellHead[cy * cols + cx] = entries++;
+                    }
+                }
+            }
+            kept[count++] = index;
+        }
+        return count;
+    }
+
+    // IoU двух рамок, вычисленный так же, как rectOverlap в OpenCV.
+    static float overlap(float[] x, float[] y, float[] w, float[] h, int a, int b) {
+        double areaA = (double) w[a] * h[a];
+        double areaB = (double) w[b] * h[b];
+        if (areaA + areaB <= Math.ulp(1.0)) {
+            return 1f;
+        }
+        double left = Math.max(x[a], x[b]);
+        double top = Math.max(y[a], y[b]);
+        double iw = Math.min((double) x[a] + w[a], (double) x[b] + w[b]) - left;
+        double ih = Math.min((double) y[a] + h[a], (double) y[b] + h[b]) - top;
+        double intersection = iw <= 0 || ih <= 0 ? 0 : iw * ih;
+        double distance = 1.0 - intersection / (areaA + areaB - intersection);
+        return 1f - (float) distance;
+    }
+}
@@ -0,0 +1,29 @@
+package detector;
+
+import org.opencv.core.Core;
+
+// Загрузка нативной библиотеки OpenCV.
+public final class OpenCv {
+    private static boolean loaded;
+
+    private OpenCv() {
+    }
+
+    // Сначала ищем библиотеку в java.library.path (локальная сборка OpenCV),
+    // затем пробуем библиотеку, упакованную в jar org.openpnp:opencv.
+    public static synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        try {
+            System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+        } catch (UnsatisfiedLinkError e) {
+            try {
+                Class.forName("nu.pattern.OpenCV").getMethod("loadLocally").invoke(null);
+            } catch (ReflectiveOperationException ignored) {
+                throw e;
+            }
+        }
+        loaded = true;
+    }
+}
@@ -0,0 +1,46 @@
+package detector;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.List;
+
+// Нанесение ограничительных рамок и подписей на кадр.
+public final class Overlay {
+    private Overlay() {
+    }
+
+    // Рисует детекции с индексами kept.
+    public static void draw(Mat frame, Detections detections, int[] kept, List<String> labels, Scalar[] colors) {
+        for (int index : kept) {
+            int classIndex = detections.classIds[index];
+            Rect rect = new Rect((int) detections.x[index], (int) detections.y[index],
+                    (int) detections.w[index], (int) detections.h[index]);
+            Imgproc.rectangle(frame, rect, colors[classIndex], 2);
+
+            // Выявленный класс: вероятность
+            String label = labels.get(classIndex) + ": " + String.format("%.2f", detections.scores[index]);
+            Imgproc.putText(frame, label, new Point(rect.x, rect.y - 10), 1, 1.5, colors[classIndex]);
+        }
+    }
+
+    // Рисует видимые объекты трекера с их id.
+    public static void draw(Mat frame, Tracker tracker, List<String> labels, Scalar[] colors) {
+        for (int t = 0; t < tracker.count; t++) {
+            if (!tracker.visible(t)) {
+                continue;
+            }
+            int classIndex = tracker.classIds[t];
+            Rect rect = new Rect((int) tracker.x[t], (int) tracker.y[t], (int) tracker.w[t], (int) tracker.h[t]);
+            Imgproc.rectangle(frame, rect, colors[classIndex], 2);
+
+            // Выявленный класс #id: вероятность
+            String label = labels.get(classIndex) + " #" + tracker.ids[t] + ": "
+                    + String.format("%.2f", tracker.scores[t]);
+            Imgproc.putText(frame, label, new Point(rect.x, rect.y - 10), 1, 1.5, colors[classIndex]);
+        }
+    }
+}
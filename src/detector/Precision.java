@@ -0,0 +1,52 @@
+package detector;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.dnn.Dnn;
+import org.opencv.dnn.Net;
+
+import java.util.List;
+
+// Точность инференса.
+public enum Precision {
+    // Полная точность (float32).
+    FP32,
+    // Половинная точность на устройствах, где она есть в OpenCV (OpenCL, CUDA).
+    // На CPU в OpenCV 4.7 половинной точности нет, и сеть остаётся в FP32.
+    FP16,
+    // 8-битная квантизация: darknet-модель квантуется при загрузке по калибровочным кадрам
+    // (Net.quantize), модель ONNX считается квантованной при экспорте. Int8-слои
+    // выполняются только бэкендом OpenCV на CPU.
+    INT8;
+
+    // Разбирает значение вида "fp16".
+    public static Precision parse(String value) {
+        return valueOf(value.trim().toUpperCase());
+    }
+
+    // Устройство для target с учётом точности: для FP16 - вариант target с половинной
+    // точностью, если бэкенд его поддерживает, иначе сам target.
+    public int target(int backend, int target) {
+        if (this != FP16) {
+            return target;
+        }
+        int half = target == Dnn.DNN_TARGET_OPENCL ? Dnn.DNN_TARGET_OPENCL_FP16
+                : target == Dnn.DNN_TARGET_CUDA ? Dnn.DNN_TARGET_CUDA_FP16
+                : -1;
+        return half >= 0 && Dnn.getAvailableTargets(backend).contains(half) ? half : target;
+    }
+
+    // Квантованная копия сети по калибровочным blob; входы и выходы остаются float,
+    // веса квантуются по каналам. Копия настроена на OpenCV/CPU.
+    public static Net quantize(Net network, List<Mat> calibration) {
+        Net quantized = network.quantize(calibration, CvType.CV_32F, CvType.CV_32F, true);
+        quantized.setPreferableBackend(Dnn.DNN_BACKEND_OPENCV);
+        quantized.setPreferableTarget(Dnn.DNN_TARGET_CPU);
+        return quantized;
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
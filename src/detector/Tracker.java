@@ -0,0 +1,300 @@
+package detector;
+
+import java.util.Arrays;
+
+// Многообъектный трекер: сопоставление рамок по IoU и фильтр Калмана с постоянной скоростью.
+// Каждый объект получает постоянный id. Между запусками детектора predict сдвигает рамки
+// по оценённой скорости, поэтому детектор можно запускать не на каждом кадре.
+// Координаты центра, ширина и высота фильтруются независимо (позиция и скорость на ось);
+// шумы пропорциональны размеру рамки. Сопоставление жадное: пары трек-детекция одного
+// класса перебираются по убыванию IoU; оставшиеся после этого сопоставляются по расстоянию
+// между центрами (не больше размера рамки) - это нужно, пока скорость объекта ещё не оценена,
+// а детектор запускается редко. Все данные хранятся в массивах, которые только
+// растут, поэтому в установившемся режиме трекер не выделяет память.
+// Экземпляр не потокобезопасен.
+public class Tracker {
+    private static final int AXES = 4;
+    // Шум позиции и скорости в долях размера рамки (как в DeepSORT).
+    private static final double POSITION_NOISE = 1.0 / 20;
+    private static final double VELOCITY_NOISE = 1.0 / 160;
+
+    private final float iouThreshold;
+    private final int maxMisses;
+
+    // Сопровождаемые объекты: count штук, рамки - прогноз на текущий кадр.
+    public int count;
+    public int[] ids = new int[0];
+    public int[] classIds = new int[0];
+    public float[] scores = new float[0];
+    public float[] x = new float[0];
+    public float[] y = new float[0];
+    public float[] w = new float[0];
+    public float[] h = new float[0];
+    // Число запусков детектора подряд, в которых объект не нашёлся.
+    public int[] misses = new int[0];
+    private int nextId = 1;
+
+    // Состояние фильтра по осям cx, cy, w, h: позиция, скорость за кадр и
+    // ковариация 2x2 (p00, p01, p11). Индекс - track * AXES + ось.
+    private double[] position = new double[0];
+    private double[] velocity = new double[0];
+    private double[] p00 = new double[0];
+    private double[] p01 = new double[0];
+    private double[] p11 = new double[0];
+
+    // Буферы сопоставления.
+    private long[] pairs = new long[0];
+    private boolean[] trackMatched = new boolean[0];
+    private boolean[] detectionMatched = new boolean[0];
+
+    // Объект удаляется, если не нашёлся в maxMisses запусках детектора подряд.
+    public Tracker(float iouThreshold, int maxMisses) {
+        this.iouThreshold = iouThreshold;
+        this.maxMisses = maxMisses;
+    }
+
+    public Tracker() {
+        this(0.3f, 3);
+    }
+
+    // Показывать ли объект: он нашёлся при последнем запуске детектора.
+    public boolean visible(int track) {
+        return misses[track] == 0;
+    }
+
+    // Сдвигает все объекты на frames кадров вперёд.
+    public void predict(int frames) {
+        if (frames <= 0) {
+            return;
+        }
+        for (int t = 0; t < count; t++) {
+            double size = size(t);
+            double qp = sq(size * POSITION_NOISE) * frames;
+            double qv = sq(size * VELOCITY_NOISE) * frames;
+            for (int k = t * AXES; k < (t + 1) * AXES; k++) {
+                position[k] += velocity[k] * frames;
+                p00[k] += frames * (2 * p01[k] + frames * p11[k]) + qp;
+                p01[k] += frames * p11[k];
+                p11[k] += qv;
+            }
+            box(t);
+        }
+    }
+
+    // Сопоставляет объекты с детекциями kept и уточняет их состояние.
+    // Несопоставленные детекции становятся новыми объектами.
+    public void update(Detections detections, int[] kept) {
+        int m = kept.length;
+        if (trackMatched.length < count) {
+            trackMatched = new boolean[Math.max(count, trackMatched.length * 2)];
+        }
+        if (detectionMatched.length < m) {
+            detectionMatched = new boolean[Math.max(m, detectionMatched.length * 2)];
+        }
+        Arrays.fill(trackMatched, 0, count, false);
+        Arrays.fill(detectionMatched, 0, m, false);
+
+        // Пары с IoU выше порога; в старших битах ключа - IoU, в младших - номер пары.
+        int n = 0;
+        for (int t = 0; t < count; t++) {
+            for (int j = 0; j < m; j++) {
+                int d = kept[j];
+                if (detections.classIds[d] != classIds[t]) {
+                    continue;
+                }
+                float iou = iou(x[t], y[t], w[t], h[t],
+                        detections.x[d], detections.y[d], detections.w[d], detections.h[d]);
+                if (iou > iouThreshold) {
+                    if (pairs.length == n) {
+                        pairs = Arrays.copyOf(pairs, Math.max(64, n * 2));
+                    }
+                    pairs[n++] = ((long) ~Float.floatToIntBits(iou) << 32) | ((long) t * m + j);
+                }
+            }
+        }
+        match(detections, kept, n);
+
+        // Оставшиеся пары по расстоянию между центрами в долях размера объекта.
+        n = 0;
+        for (int t = 0; t < count; t++) {
+            if (trackMatched[t]) {
+                continue;
+            }
+            float cx = x[t] + w[t] / 2;
+            float cy = y[t] + h[t] / 2;
+            float size = Math.max(w[t], h[t]);
+            for (int j = 0; j < m; j++) {
+                int d = kept[j];
+                if (detectionMatched[j] || detections.classIds[d] != classIds[t]) {
+                    continue;
+                }
+                float dx = detections.x[d] + detections.w[d] / 2 - cx;
+                float dy = detections.y[d] + detections.h[d] / 2 - cy;
+                float distance = (float) Math.sqrt(dx * dx + dy * dy) / size;
+                if (distance < 1) {
+                    if (pairs.length == n) {
+                        pairs = Arrays.copyOf(pairs, Math.max(64, n * 2));
+                    }
+                    // Чем меньше расстояние, тем раньше пара; ключ - 1 - distance по убыванию.
+                    pairs[n++] = ((long) ~Float.floatToIntBits(1 - distance) << 32) | ((long) t * m + j);
+                }
+            }
+        }
+        match(detections, kept, n);
+
+        // Ненайденные объекты; удаление переносит последний объект на место удалённого,
+        // поэтому перебираем с конца.
+        for (int t = count - 1; t >= 0; t--) {
+            if (!trackMatched[t] && ++misses[t] > maxMisses) {
+                remove(t);
+            }
+        }
+        for (int j = 0; j < m; j++) {
+            if (!detectionMatched[j]) {
+                add(detections, kept[j]);
+            }
+        }
+    }
+
+    // Жадно сопоставляет пары из pairs[0..n) по возрастанию ключа.
+    private void match(Detections detections, int[] kept, int n) {
+        Arrays.sort(pairs, 0, n);
+        int m = kept.length;
+        for (int i = 0; i < n; i++) {
+            long pair = pairs[i] & 0xffffffffL;
+            int t = (int) (pair / m);
+            int j = (int) (pair % m);
+            if (trackMatched[t] || detectionMatched[j]) {
+                continue;
+            }
+            trackMatched[t] = true;
+            detectionMatched[j] = true;
+            correct(t, detections, kept[j]);
+        }
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    // Шаг коррекции фильтра по измеренной рамке.
+    private void correct(int t, Detections detections, int d) {
+        double r = sq(size(t) * POSITION_NOISE);
+        int base = t * AXES;
+        for (int axis = 0; axis < AXES; axis++) {
+            int k = base + axis;
+            double s = p00[k] + r;
+            double k0 = p00[k] / s;
+            double k1 = p01[k] / s;
+            double error = measurement(detections, d, axis) - position[k];
+            position[k] += k0 * error;
+            velocity[k] += k1 * error;
+            p11[k] -= k1 * p01[k];
+            p01[k] *= 1 - k0;
+            p00[k] *= 1 - k0;
+        }
+        misses[t] = 0;
+        scores[t] = detections.scores[d];
+        box(t);
+    }
+
+    private void add(Detections detections, int d) {
+        ensureCapacity(count + 1);
+        int t = count++;
+        ids[t] = nextId++;
+        classIds[t] = detections.classIds[d];
+        scores[t] = detections.scores[d];
+        misses[t] = 0;
+        double size = Math.max(detections.w[d], detections.h[d]);
+        for (int axis = 0; axis < AXES; axis++) {
+            int k = t * AXES + axis;
+            position[k] = measurement(detections, d, axis);
+            velocity[k] = 0;
+            p00[k] = sq(2 * size * POSITION_NOISE);
+            p01[k] = 0;
+            p11[k] = sq(10 * size * VELOCITY_NOISE);
+        }
+        box(t);
+    }
+
+    private void remove(int t) {
+        int last = --count;
+        if (t == last) {
+            return;
+        }
+        ids[t] = ids[last];
+        classIds[t] = classIds[last];
+        scores[t] = scores[last];
+        misses[t] = misses[last];
+        x[t] = x[last];
+        y[t] = y[last];
+        w[t] = w[last];
+        h[t] = h[last];
+        System.arraycopy(position, last * AXES, position, t * AXES, AXES);
+        System.arraycopy(velocity, last * AXES, velocity, t * AXES, AXES);
+        System.arraycopy(p00, last * AXES, p00, t * AXES, AXES);
+        System.arraycopy(p01, last * AXES, p01, t * AXES, AXES);
+        System.arraycopy(p11, last * AXES, p11, t * AXES, AXES);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (ids.length >= capacity) {
+            return;
+        }
+        int size = Math.max(capacity, Math.max(16, ids.length * 2));
+        ids = Arrays.copyOf(ids, size);
+        classIds = Arrays.copyOf(classIds, size);
+        scores = Arrays.copyOf(scores, size);
+        misses = Arrays.copyOf(misses, size);
+        x = Arrays.copyOf(x, size);
+        y = Arrays.copyOf(y, size);
+        w = Arrays.copyOf(w, size);
+        h = Arrays.copyOf(h, size);
+        position = Arrays.copyOf(position, size * AXES);
+        velocity = Arrays.copyOf(velocity, size * AXES);
+        p00 = Arrays.copyOf(p00, size * AXES);
+        p01 = Arrays.copyOf(p01, size * AXES);
+        p11 = Arrays.copyOf(p11, size * AXES);
+    }
+
+    // Рамка объекта из состояния фильтра.
+    private void box(int t) {
+        int k = t * AXES;
+        w[t] = (float) Math.max(1, position[k + 2]);
+        h[t] = (float) Math.max(1, position[k + 3]);
+        x[t] = (float) position[k] - w[t] / 2;
+        y[t] = (float) position[k + 1] - h[t] / 2;
+    }
+
+    private double size(int t) {
+        return Math.max(w[t], h[t]);
+    }
+
+    private static double measurement(Detections detections, int d, int axis) {
+        switch (axis) {
+            case 0:
+                return detections.x[d] + detections.w[d] / 2.0;
+            case 1:
+                return detections.y[d] + detections.h[d] / 2.0;
+            case 2:
+                return detections.w[d];
+            default:
+                return detections.h[d];
+        }
+    }
+
+    // IoU двух рамок (x, y - левый верхний угол).
+    public static float iou(float ax, float ay, float aw, float ah, float bx, float by, float bw, float bh) {
+        float iw = Math.min(ax + aw, bx + bw) - Math.max(ax, bx);
+        float ih = Math.min(ay + ah, by + bh) - Math.max(ay, by);
+        if (iw <= 0 || ih <= 0) {
+            return 0;
+        }
+        float intersection = iw * ih;
+        return intersection / (aw * ah + bw * bh - intersection);
+    }
+
+    private static double sq(double value) {
+        return value * value;
+    }
+}
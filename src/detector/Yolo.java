@@ -0,0 +1,104 @@
+package detector;
+
+import org.opencv.core.Scalar;
+import org.opencv.dnn.Net;
+import org.opencv.videoio.VideoCapture;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+
+// Общие функции для работы с сетью YOLO.
+public final class Yolo {
+    private Yolo() {
+    }
+
+    // Функция для парсинга файла coco.names.
+    public static List<String> labels(String path) {
+        List<String> labels = new ArrayList<>();
+        try (Scanner scnLabels = new Scanner(new File(path))) {
+            while (scnLabels.hasNext()) {
+                String label = scnLabels.nextLine();
+                labels.add(label);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return labels;
+    }
+
+    // Функция для генерации цветов
+    public static Scalar[] generateColors(int amountOfClasses) {
+        Scalar[] colors = new Scalar[amountOfClasses];
+        Random random = new Random();
+        for (int i = 0; i < amountOfClasses; i++) {
+            int r = random.nextInt(256);
+            int g = random.nextInt(256);
+            int b = random.nextInt(256);
+            colors[i] = new Scalar(r, g, b);
+        }
+        return colors;
+    }
+
+    // Метод для извлечения наименований выходных слоев.
+    public static List<String> getOutputLayerNames(Net network) {
+        List<String> layersNames = network.getLayerNames();
+        List<String> outputLayersNames = new ArrayList<>();
+        List<Integer> unconnectedLayersIndexes = network.getUnconnectedOutLayers().toList();
+        for (int i : unconnectedLayersIndexes) {
+            outputLayersNames.add(layersNames.get(i - 1));
+        }
+        return outputLayersNames;
+    }
+
+    // Размер входа сети из секции [net] файла cfg: {width, height}.
+    public static int[] inputSize(String cfgPath) throws IOException {
+        int[] size = {0, 0};
+        boolean net = false;
+        for (String line : Files.readAllLines(Paths.get(cfgPath))) {
+            line = line.trim();
+            if (line.startsWith("[")) {
+                net = line.equals("[net]") || line.equals("[network]");
+                continue;
+            }
+            int eq = line.indexOf('=');
+            if (!net || line.startsWith("#") || eq < 0) {
+                continue;
+            }
+            String key = line.substring(0, eq).trim();
+            if (key.equals("width")) {
+                size[0] = Integer.parseInt(line.substring(eq + 1).trim());
+            } else if (key.equals("height")) {
+                size[1] = Integer.parseInt(line.substring(eq + 1).trim());
+            }
+        }
+        if (size[0] <= 0 || size[1] <= 0) {
+            throw new IOException("В " + cfgPath + " не указан размер входа сети");
+        }
+        return size;
+    }
+
+    // Источник - локальный видеофайл (а не камера или URL).
+    public static boolean isFile(String source) {
+        try {
+            return Files.isRegularFile(Paths.get(source));
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    // Открывает видеопоток: число - индекс камеры, иначе путь к файлу или URL.
+    public static VideoCapture openCapture(String source) {
+        if (source.matches("\\d+")) {
+            return new VideoCapture(Integer.parseInt(source));
+        }
+        return new VideoCapture(source);
+    }
+}
@@ -0,0 +1,167 @@
+package detector;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// Разбор выходов слоёв YOLO.
+// Каждый выходной слой копируется одним вызовом get в переиспользуемый float[],
+// после чего предсказания просматриваются на Java без обращений к JNI на каждую строку.
+// Экземпляр не потокобезопасен: у каждого потока должен быть свой декодер.
+public class YoloDecoder {
+    // Число строк, начиная с которого разбор делится на части для пула потоков.
+    private static final int PARALLEL_MIN_ROWS = 4096;
+    private static final int CHUNK_ROWS = 1024;
+
+    private final ExecutorService executor;
+    private float[][] layerData = new float[0][];
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    // Декодер, разбирающий слои последовательно в вызывающем потоке.
+    public YoloDecoder() {
+        this(null);
+    }
+
+    // Большие выходы разбираются частями параллельно в executor.
+    public YoloDecoder(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    // Дописывает в out все предсказания с уверенностью больше minProbability.
+    // Координаты пересчитываются в пиксели кадра размером width x height.
+    public void decode(List<Mat> outputs, int width, int height, float minProbability, Detections out) {
+        if (layerData.length < outputs.size()) {
+            layerData = new float[outputs.size()][];
+        }
+
+        int totalRows = 0;
+        for (int l = 0; l < outputs.size(); l++) {
+            layerData[l] = copy(outputs.get(l), layerData[l]);
+            totalRows += rows(outputs.get(l));
+        }
+
+        if (executor == null || totalRows < PARALLEL_MIN_ROWS) {
+            for (int l = 0; l < outputs.size(); l++) {
+                Mat output = outputs.get(l);
+                scan(layerData[l], cols(output), 0, rows(output), width, height, minProbability, out);
+            }
+            return;
+        }
+
+        // Делим все слои на части примерно по CHUNK_ROWS строк.
+        int count = 0;
+        for (int l = 0; l < outputs.size(); l++) {
+            Mat output = outputs.get(l);
+            int rows = rows(output);
+            for (int from = 0; from < rows; from += CHUNK_ROWS) {
+                if (count == chunks.size()) {
+                    chunks.add(new Chunk());
+                }
+                chunks.get(count++).set(layerData[l], cols(output), from, Math.min(rows, from + CHUNK_ROWS),
+                        width, height, minProbability);
+            }
+        }
+
+        try {
+            List<Future<Void>> futures = executor.invokeAll(chunks.subList(0, count));
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+
+        // Склеиваем части в исходном порядке, чтобы результат совпадал с последовательным разбором.
+        for (int i = 0; i < count; i++) {
+            out.addAll(chunks.get(i).result);
+        }
+    }
+
+    // Копирует данные матрицы в буфер, увеличивая его при необходимости.
+    static float[] copy(Mat output, float[] buffer) {
+        if (output.type() != CvType.CV_32F || !output.isContinuous()) {
+            throw new IllegalArgumentException("Ожидается непрерывная матрица CV_32F: " + output);
+        }
+        int total = (int) output.total();
+        if (buffer == null || buffer.length < total) {
+            buffer = new float[total];
+        }
+        output.get(new int[output.dims()], buffer);
+        return buffer;
+    }
+
+    static int cols(Mat output) {
+        return output.size(output.dims() - 1);
+    }
+
+    static int rows(Mat output) {
+        return (int) (output.total() / cols(output));
+    }
+
+    // Просматривает строки [from, to): центр x, центр y, ширина, высота, objectness, оценки классов.
+    static void scan(float[] data, int cols, int from, int to, int width, int height,
+                     float minProbability, Detections out) {
+        for (int i = from; i < to; i++) {
+            int offset = i * cols;
+
+            // Ищем класс с наибольшей оценкой.
+            int classId = 0;
+            float confidence = data[offset + 5];
+            for (int c = offset + 6; c < offset + cols; c++) {
+                if (data[c] > confidence) {
+                    confidence = data[c];
+                    classId = c - offset - 5;
+                }
+            }
+
+            // Фильтруем предсказания по порогу уверенности.
+            if (confidence > minProbability) {
+                int centerX = (int) (data[offset] * width);
+                int centerY = (int) (data[offset + 1] * height);
+                int boxWidth = (int) (data[offset + 2] * width);
+                int boxHeight = (int) (data[offset + 3] * height);
+                int left = centerX - boxWidth / 2;
+                int top = centerY - boxHeight / 2;
+                out.add(classId, confidence, left, top, boxWidth, boxHeight);
+            }
+        }
+    }
+
+    // Часть выходного слоя, разбираемая в пуле потоков.
+    private static final class Chunk implements Callable<Void> {
+        final Detections result = new Detections();
+        float[] data;
+        int cols;
+        int from;
+        int to;
+        int width;
+        int height;
+        float minProbability;
+
+        void set(float[] data, int cols, int from, int to, int width, int height, float minProbability) {
+            this.data = data;
+            this.cols = cols;
+            this.from = from;
+            this.to = to;
+            this.width = width;
+            this.height = height;
+            this.minProbability = minProbability;
+        }
+
+        @Override
+        public Void call() {
+            result.clear();
+            scan(data, cols, from, to, width, height, minProbability, result);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package detector.batch;
+
+import detector.FrameDetector;
+import detector.Overlay;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.VideoWriter;
+import org.opencv.videoio.Videoio;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Пакетная обработка папки с изображениями и видео без отображения.
+// Файлы обрабатываются параллельно в ForkJoinPool (с перехватом работы) на заданном наборе
+// детекторов: рабочих потоков столько же, сколько детекторов, и файл на время обработки
+// берёт свободный детектор, поэтому сеть никогда не используется двумя потоками сразу. В out записываются размеченные копии файлов (annotated/),
+// детекции в detections.jsonl и журнал обработанных файлов progress.txt, по которому
+// повторный запуск пропускает уже обработанные файлы.
+// Память ограничена: папка обходится лениво, а в работе одновременно не больше
+// двух файлов на рабочий поток.
+public class BatchRunner {
+    private static final Set<String> IMAGES = Set.of("jpg", "jpeg", "png", "bmp", "tif", "tiff", "webp");
+    private static final Set<String> VIDEOS = Set.of("mp4", "avi", "mov", "mkv", "mpg", "mpeg", "m4v", "webm");
+
+    private final Path input;
+    private final Path out;
+    private final List<FrameDetector> detectors;
+    private final List<String> labels;
+    private final Scalar[] colors;
+    private final int workers;
+
+    private final AtomicLong images = new AtomicLong();
+    private final AtomicLong videos = new AtomicLong();
+    private final AtomicLong videoFrames = new AtomicLong();
+    private final AtomicLong detected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    // Файл изображения (по расширению).
+    public static boolean isImage(Path file) {
+        return IMAGES.contains(extension(file));
+    }
+
+    // detectors - по детектору (со своей сетью) на рабочий поток.
+    public BatchRunner(Path input, Path out, List<FrameDetector> detectors, List<String> labels, Scalar[] colors) {
+        this.input = input;
+        this.out = out;
+        this.detectors = detectors;
+        this.labels = labels;
+        this.colors = colors;
+        this.workers = detectors.size();
+    }
+
+    public void run() throws IOException, InterruptedException {
+        Files.createDirectories(out.resolve("annotated"));
+        Path logFile = out.resolve("detections.jsonl");
+        long skipped = 0;
+        long start = System.nanoTime();
+
+        try (Progress progress = new Progress(out.resolve("progress.txt"))) {
+            // Убираем из журнала детекций строки файлов, обработка которых не завершилась.
+            DetectionLog.retain(logFile, progress::isDone);
+            if (progress.completed() > 0) {
+                System.out.println("Продолжаем: уже обработано файлов: " + progress.completed());
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            BlockingQueue<FrameDetector> free = new ArrayBlockingQueue<>(workers, false, detectors);
+            Semaphore window = new Semaphore(workers * 2);
+
+            // Журнал закрывается только после того, как остановились все задачи: при ошибке
+            // обхода папки задачи прерываются (shutdownNow), и их нужно дождаться.
+            try (DetectionLog log = new DetectionLog(logFile, labels)) {
+                try (Stream<Path> files = Files.walk(input)) {
+                    Iterator<Path> iterator = files.filter(Files::isRegularFile).iterator();
+                    while (iterator.hasNext()) {
+                        Path file = iterator.next();
+                        String extension = extension(file);
+                        if (!IMAGES.contains(extension) && !VIDEOS.contains(extension)) {
+                            continue;
+                        }
+                        String name = input.relativize(file).toString().replace('\\', '/');
+                        if (progress.isDone(name)) {
+                            skipped++;
+                            continue;
+                        }
+
+                        window.acquire();
+                        pool.execute(() -> {
+                            try {
+                                FrameDetector detector = free.take();
+                                try {
+                                    process(file, name, IMAGES.contains(extension), detector, log, progress);
+                                } finally {
+                                    free.add(detector);
+                                }
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            } finally {
+                                window.release();
+                            }
+                        });
+                    }
+                    // Ждём, пока завершатся все файлы в работе.
+                    window.acquire(workers * 2);
+                } finally {
+                    pool.shutdownNow();
+                    while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                        System.out.println("Ожидание завершения обработки файлов...");
+                    }
+                }
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT,
+                "Готово за %.1f с: изображений %d (%.2f изобр./с), видео %d (%d кадров, %.2f кадр./с), "
+                        + "детекций %d, пропущено %d, ошибок %d%n",
+                seconds, images.get(), images.get() / seconds, videos.get(), videoFrames.get(),
+                videoFrames.get() / seconds, detected.get(), skipped, failed.get());
+    }
+
+    private void process(Path file, String name, boolean image, FrameDetector detector,
+                         DetectionLog log, Progress progress) {
+        try {
+            Path target = out.resolve("annotated").resolve(name);
+            Files.createDirectories(target.getParent());
+            boolean ok = image
+                    ? processImage(file, name, target, detector, log)
+                    : processVideo(file, name, target, detector, log);
+            if (!ok) {
+                failed.incrementAndGet();
+                return;
+            }
+            // Файл считается обработанным только после того, как его детекции записаны на диск.
+            log.flush();
+            progress.markDone(name);
+        } catch (Exception e) {
+            System.out.println("Ошибка при обработке " + name + ": " + e.getMessage());
+            failed.incrementAndGet();
+        }
+    }
+
+    private boolean processImage(Path file, String name, Path target, FrameDetector detector, DetectionLog log)
+            throws IOException {
+        Mat frame = Imgcodecs.imread(file.toString());
+        try {
+            if (frame.empty()) {
+                System.out.println("Не удалось прочитать " + name);
+                return false;
+            }
+            int[] kept = detector.detect(frame);
+            Overlay.draw(frame, detector.detections(), kept, labels, colors);
+            Imgcodecs.imwrite(target.toString(), frame);
+            log.write(name, 0, detector.detections(), kept);
+            detected.addAndGet(kept.length);
+            images.incrementAndGet();
+            return true;
+        } finally {
+            frame.release();
+        }
+    }
+
+    // Размеченное видео записывается в MJPG рядом с именем исходного файла: name.avi.
+    private boolean processVideo(Path file, String name, Path target, FrameDetector detector, DetectionLog log)
+            throws IOException {
+        VideoCapture cap = new VideoCapture(file.toString());
+        if (!cap.isOpened()) {
+            System.out.println("Не удалось открыть " + name);
+            return false;
+        }
+        double fps = cap.get(Videoio.CAP_PROP_FPS);
+        VideoWriter writer = new VideoWriter();
+        Mat frame = new Mat();
+        long index = 0;
+        try {
+            while (cap.read(frame)) {
+                if (!writer.isOpened()) {
+                    writer.open(target + ".avi", VideoWriter.fourcc('M', 'J', 'P', 'G'),
+                            fps > 0 ? fps : 25, frame.size());
+                }
+                int[] kept = detector.detect(frame);
+                Overlay.draw(frame, detector.detections(), kept, labels, colors);
+                writer.write(frame);
+                log.write(name, index++, detector.detections(), kept);
+                detected.addAndGet(kept.length);
+                videoFrames.incrementAndGet();
+            }
+            videos.incrementAndGet();
+            return true;
+        } finally {
+            frame.release();
+            writer.release();
+            cap.release();
+        }
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,123 @@
+package detector.batch;
+
+import detector.Detections;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+// Потоковая запись детекций в формате JSON Lines: одна строка на детекцию.
+// {"file":"a/b.jpg","frame":0,"classId":0,"class":"person","score":0.91,"x":10,"y":20,"w":30,"h":40}
+class DetectionLog implements AutoCloseable {
+    private final BufferedWriter writer;
+    private final List<String> labels;
+
+    DetectionLog(Path file, List<String> labels) throws IOException {
+        this.labels = labels;
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    // Записывает детекции одного кадра одной операцией, чтобы строки разных файлов не перемешивались.
+    void write(String file, long frame, Detections detections, int[] kept) throws IOException {
+        if (kept.length == 0) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder(kept.length * 128);
+        String escaped = escape(file);
+        for (int index : kept) {
+            int classId = detections.classIds[index];
+            sb.append("{\"file\":\"").append(escaped)
+                    .append("\",\"frame\":").append(frame)
+                    .append(",\"classId\":").append(classId)
+                    .append(",\"class\":\"").append(escape(classId < labels.size() ? labels.get(classId) : ""))
+                    .append("\",\"score\":").append(String.format(Locale.ROOT, "%.4f", detections.scores[index]))
+                    .append(",\"x\":").append((int) detections.x[index])
+                    .append(",\"y\":").append((int) detections.y[index])
+                    .append(",\"w\":").append((int) detections.w[index])
+                    .append(",\"h\":").append((int) detections.h[index])
+                    .append("}\n");
+        }
+        synchronized (this) {
+            writer.write(sb.toString());
+        }
+    }
+
+    synchronized void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    // Оставляет в журнале только строки файлов, для которых keep возвращает true.
+    // Нужно при продолжении запуска: строки файла, обработка которого прервалась,
+    // удаляются, потому что файл будет обработан заново.
+    static void retain(Path file, Predicate<String> keep) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String name = fileOf(line);
+                if (name != null && keep.test(name)) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Значение поля "file", которое всегда записывается первым.
+    static String fileOf(String line) {
+        String prefix = "{\"file\":\"";
+        if (!line.startsWith(prefix)) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = prefix.length(); i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c == '\\' && i + 1 < line.length()) {
+                c = line.charAt(++i);
+                if (c == 'u' && i + 4 < line.length()) {
+                    c = (char) Integer.parseInt(line.substring(i + 1, i + 5), 16);
+                    i += 4;
+                }
+            }
+            sb.append(c);
+        }
+        return null;
+    }
+
+    static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
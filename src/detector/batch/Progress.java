@@ -0,0 +1,72 @@
+package detector.batch;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Журнал обработанных файлов для продолжения прерванного запуска.
+// Каждый обработанный файл дописывается строкой в progress.txt; при загрузке в памяти
+// хранятся только 64-битные хеши путей в отсортированном массиве (8 байт на файл).
+class Progress implements AutoCloseable {
+    private long[] done = new long[0];
+    private int size;
+    private final BufferedWriter writer;
+
+    Progress(Path file) throws IOException {
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        add(hash(line));
+                    }
+                }
+            }
+            Arrays.sort(done, 0, size);
+        }
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void add(long hash) {
+        if (size == done.length) {
+            done = Arrays.copyOf(done, Math.max(1024, size * 2));
+        }
+        done[size++] = hash;
+    }
+
+    int completed() {
+        return size;
+    }
+
+    // Был ли файл обработан в одном из предыдущих запусков.
+    boolean isDone(String file) {
+        return Arrays.binarySearch(done, 0, size, hash(file)) >= 0;
+    }
+
+    synchronized void markDone(String file) throws IOException {
+        writer.write(file);
+        writer.newLine();
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    // 64-битный FNV-1a.
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
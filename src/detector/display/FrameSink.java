@@ -0,0 +1,12 @@
+package detector.display;
+
+import org.opencv.core.Mat;
+
+// Получатель готовых (размеченных) кадров.
+public interface FrameSink extends AutoCloseable {
+    void show(Mat frame);
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,10 @@
+package detector.display;
+
+import org.opencv.core.Mat;
+
+// Ничего не отображает: для серверов без дисплея.
+public class HeadlessSink implements FrameSink {
+    @Override
+    public void show(Mat frame) {
+    }
+}
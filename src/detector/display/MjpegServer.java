@@ -0,0 +1,364 @@
+package detector.display;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// HTTP-сервер, раздающий размеченные кадры в виде MJPEG (multipart/x-mixed-replace):
+// / - поток кадров (открывается прямо в браузере), /snapshot.jpg - последний кадр.
+// Каждый кадр кодируется в JPEG один раз в пуле кодировщиков, и один и тот же буфер
+// отправляется всем клиентам без копирования. У клиента есть место только под один
+// следующий кадр: если он ещё не отправил предыдущий, старый кадр заменяется новым и
+// считается выброшенным, поэтому медленные клиенты не задерживают конвейер.
+// show никогда не блокируется: если заняты все кодировщики, кадр пропускается. Пока нет
+// клиентов потока, кадры кодируются не чаще раза в секунду - только для /snapshot.jpg.
+// Запрос клиента должен прийти за REQUEST_TIMEOUT_MILLIS, иначе соединение закрывается,
+// чтобы простаивающие соединения не занимали потоки.
+// Клиенты обслуживаются виртуальными потоками (Java 21+, через reflection), на более
+// старых JDK - обычными потоками; запись идёт через SocketChannel.
+public class MjpegServer implements FrameSink {
+    private static final String BOUNDARY = "frame";
+    private static final byte[] STREAM_HEADER = ("HTTP/1.0 200 OK\r\n"
+            + "Content-Type: multipart/x-mixed-replace; boundary=" + BOUNDARY + "\r\n"
+            + "Cache-Control: no-cache, no-store\r\n"
+            + "Pragma: no-cache\r\n"
+            + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+    // Как часто поток клиента без новых кадров проверяет, не закрыт ли сервер.
+    private static final long IDLE_PARK_NANOS = 100_000_000L;
+    // Интервал кодирования кадров для /snapshot.jpg, пока нет клиентов потока.
+    private static final long SNAPSHOT_INTERVAL_NANOS = 1_000_000_000L;
+    private static final int REQUEST_TIMEOUT_MILLIS = 5000;
+
+    private final ServerSocketChannel server;
+    private final Thread acceptor;
+    private final ExecutorService clientThreads;
+    private final boolean virtualThreads;
+    private final ExecutorService encoders;
+    // Буферы для копий кадров, ожидающих кодирования: по одному на кодировщик.
+    private final ArrayBlockingQueue<Mat> freeBuffers;
+    private final MatOfInt params;
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<Jpeg> latest = new AtomicReference<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder encoded = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    // Время (System.nanoTime) последнего кадра, отданного кодировщику; только поток show.
+    private long lastEncodeNanos;
+    private volatile boolean closed;
+
+    // Закодированный кадр: заголовок части и JPEG, общие для всех клиентов.
+    private static final class Jpeg {
+        final long sequence;
+        final ByteBuffer header;
+        final ByteBuffer body;
+
+        Jpeg(long sequence, byte[] jpeg) {
+            this.sequence = sequence;
+            this.header = ByteBuffer.wrap(("--" + BOUNDARY + "\r\n"
+                    + "Content-Type: image/jpeg\r\n"
+                    + "Content-Length: " + jpeg.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII))
+                    .asReadOnlyBuffer();
+            this.body = ByteBuffer.wrap(jpeg).asReadOnlyBuffer();
+        }
+    }
+
+    public MjpegServer(String host, int port, int quality, int encoderThreads) throws IOException {
+        params = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, quality);
+        freeBuffers = new ArrayBlockingQueue<>(encoderThreads);
+        for (int i = 0; i < encoderThreads; i++) {
+            freeBuffers.add(new Mat());
+        }
+        encoders = Executors.newFixedThreadPool(encoderThreads, daemon("mjpeg-encoder"));
+        ExecutorService virtual = virtualThreadExecutor();
+        virtualThreads = virtual != null;
+        clientThreads = virtual != null ? virtual : Executors.newCachedThreadPool(daemon("mjpeg-client"));
+
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(host, port), 256);
+        acceptor = new Thread(this::acceptLoop, "mjpeg-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    // Только локальные подключения; доступ с других хостов - явным host.
+    public MjpegServer(int port) throws IOException {
+        this("127.0.0.1", port, 80, 2);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor, если JDK его поддерживает, иначе null.
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicLong counter = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void show(Mat frame) {
+        if (frame.empty() || closed) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (clients.isEmpty() && now - lastEncodeNanos < SNAPSHOT_INTERVAL_NANOS) {
+            return;
+        }
+        Mat buffer = freeBuffers.poll();
+        if (buffer == null) {
+            skipped.increment();
+            return;
+        }
+        frame.copyTo(buffer);
+        lastEncodeNanos = now;
+        long number = sequence.incrementAndGet();
+        encoders.execute(() -> encode(buffer, number));
+    }
+
+    private void encode(Mat buffer, long number) {
+        Jpeg jpeg;
+        MatOfByte bytes = new MatOfByte();
+        try {
+            Imgcodecs.imencode(".jpg", buffer, bytes, params);
+            jpeg = new Jpeg(number, bytes.toArray());
+        } finally {
+            bytes.release();
+            freeBuffers.offer(buffer);
+        }
+        encoded.increment();
+
+        // Кодировщики могут закончить не по порядку - более старый кадр не публикуется.
+        Jpeg current;
+        do {
+            current = latest.get();
+            if (current != null && current.sequence > number) {
+                return;
+            }
+        } while (!latest.compareAndSet(current, jpeg));
+        for (Client client : clients) {
+            client.offer(jpeg);
+        }
+    }
+
+    private void acceptLoop() {
+        try {
+            while (!closed) {
+                SocketChannel channel = server.accept();
+                channel.socket().setTcpNoDelay(true);
+                clientThreads.execute(new Client(channel));
+            }
+        } catch (ClosedChannelException ignored) {
+            // Сервер закрыт.
+        } catch (IOException e) {
+            if (!closed) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Соединение с клиентом; обслуживается своим (виртуальным) потоком.
+    private final class Client implements Runnable {
+        private final SocketChannel channel;
+        private final AtomicReference<Jpeg> pending = new AtomicReference<>();
+        private final ByteBuffer[] part = new ByteBuffer[3];
+        private volatile Thread thread;
+        private long sent;
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void offer(Jpeg jpeg) {
+            Jpeg previous = pending.getAndSet(jpeg);
+            if (previous != null) {
+                dropped.increment();
+            }
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            try {
+                String path = readRequestPath();
+                if (path == null) {
+                    return;
+                }
+                if (path.startsWith("/snapshot")) {
+                    snapshot();
+                    return;
+                }
+                write(ByteBuffer.wrap(STREAM_HEADER));
+                clients.add(this);
+                Jpeg current = latest.get();
+                if (current != null) {
+                    pending.compareAndSet(null, current);
+                }
+                while (!closed) {
+                    Jpeg jpeg = pending.getAndSet(null);
+                    if (jpeg == null) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    } else if (jpeg.sequence > sent) {
+                        sendPart(jpeg);
+                        sent = jpeg.sequence;
+                    }
+                }
+            } catch (IOException ignored) {
+                // Клиент отключился.
+            } finally {
+                clients.remove(this);
+                disconnect();
+            }
+        }
+
+        // Путь из строки запроса "GET /path HTTP/1.1"; null, если запрос не GET.
+        // Запрос читается через поток сокета: блокирующее чтение из канала не учитывает
+        // SO_TIMEOUT. Весь запрос должен прийти за REQUEST_TIMEOUT_MILLIS, иначе
+        // SocketTimeoutException закрывает соединение.
+        private String readRequestPath() throws IOException {
+            byte[] request = new byte[4096];
+            int length = 0;
+            InputStream in = channel.socket().getInputStream();
+            long deadline = System.nanoTime() + REQUEST_TIMEOUT_MILLIS * 1_000_000L;
+            while (length < request.length) {
+                long left = (deadline - System.nanoTime()) / 1_000_000L;
+                if (left <= 0) {
+                    return null;
+                }
+                channel.socket().setSoTimeout((int) left);
+                int read = in.read(request, length, request.length - length);
+                if (read < 0) {
+                    return null;
+                }
+                length += read;
+                String text = new String(request, 0, length, StandardCharsets.US_ASCII);
+                if (text.contains("\r\n\r\n") || text.contains("\n\n")) {
+                    String[] parts = text.split("\\s+", 3);
+                    return parts.length >= 2 && parts[0].equals("GET") ? parts[1] : null;
+                }
+            }
+            return null;
+        }
+
+        private void snapshot() throws IOException {
+            Jpeg jpeg = latest.get();
+            if (jpeg == null) {
+                write(ByteBuffer.wrap("HTTP/1.0 503 Service Unavailable\r\nContent-Length: 0\r\n\r\n"
+                        .getBytes(StandardCharsets.US_ASCII)));
+                return;
+            }
+            write(ByteBuffer.wrap(("HTTP/1.0 200 OK\r\nContent-Type: image/jpeg\r\nContent-Length: "
+                    + jpeg.body.remaining() + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII)));
+            write(jpeg.body.duplicate());
+        }
+
+        // Заголовок части, JPEG и перевод строки одной записью со сборкой буферов.
+        private void sendPart(Jpeg jpeg) throws IOException {
+            part[0] = jpeg.header.duplicate();
+            part[1] = jpeg.body.duplicate();
+            part[2] = ByteBuffer.wrap(CRLF);
+            while (part[2].hasRemaining()) {
+                channel.write(part);
+            }
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        void disconnect() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public int port() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    public int clients() {
+        return clients.size();
+    }
+
+    // Закодированные кадры.
+    public long encoded() {
+        return encoded.sum();
+    }
+
+    // Кадры, пропущенные из-за занятых кодировщиков.
+    public long skipped() {
+        return skipped.sum();
+    }
+
+    // Кадры, которые медленные клиенты не успели отправить (сумма по клиентам).
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    public boolean virtualThreads() {
+        return virtualThreads;
+    }
+
+    public String report() {
+        return String.format("mjpeg[clients=%d encoded=%d skipped=%d dropped=%d%s]", clients(), encoded(),
+                skipped(), dropped(), virtualThreads ? " virtual" : "");
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException ignored) {
+        }
+        for (Client client : clients) {
+            client.disconnect();
+        }
+        encoders.shutdown();
+        clientThreads.shutdownNow();
+        try {
+            encoders.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Mat buffer : freeBuffers) {
+            buffer.release();
+        }
+        params.release();
+    }
+}
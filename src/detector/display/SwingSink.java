@@ -0,0 +1,119 @@
+package detector.display;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.lang.reflect.InvocationTargetException;
+
+// Отображает кадры в окне без промежуточного кодирования.
+// Байты BGR-кадра копируются напрямую в буфер BufferedImage типа TYPE_3BYTE_BGR,
+// а рисование выполняется в потоке обработки событий Swing.
+// Используются два изображения: пока окно рисует одно, в другое копируется следующий кадр.
+public class SwingSink implements FrameSink {
+    private final JFrame window;
+    private final FrameView view = new FrameView();
+    private final Object lock = new Object();
+    private BufferedImage front;
+    private BufferedImage back;
+
+    public SwingSink(String title) {
+        window = new JFrame(title);
+        onEdt(() -> {
+            window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            window.setContentPane(view);
+            window.pack();
+            window.setVisible(true);
+        });
+    }
+
+    @Override
+    public void show(Mat frame) {
+        if (frame.empty()) {
+            return;
+        }
+        boolean resized = false;
+        if (back == null || back.getWidth() != frame.cols() || back.getHeight() != frame.rows()
+                || back.getType() != imageType(frame)) {
+            back = new BufferedImage(frame.cols(), frame.rows(), imageType(frame));
+            resized = true;
+        }
+
+        // Копируем пиксели кадра прямо в буфер изображения.
+        byte[] pixels = ((DataBufferByte) back.getRaster().getDataBuffer()).getData();
+        frame.get(0, 0, pixels);
+
+        synchronized (lock) {
+            BufferedImage shown = front;
+            front = back;
+            back = shown;
+        }
+
+        // Окно перестраивается, только если изменился размер кадра.
+        if (resized) {
+            SwingUtilities.invokeLater(() -> {
+                view.revalidate();
+                window.pack();
+            });
+        }
+        view.repaint();
+    }
+
+    @Override
+    public void close() {
+        onEdt(window::dispose);
+    }
+
+    private static int imageType(Mat frame) {
+        if (frame.type() == CvType.CV_8UC3) {
+            return BufferedImage.TYPE_3BYTE_BGR;
+        }
+        if (frame.type() == CvType.CV_8UC1) {
+            return BufferedImage.TYPE_BYTE_GRAY;
+        }
+        throw new IllegalArgumentException("Неподдерживаемый тип кадра: " + CvType.typeToString(frame.type()));
+    }
+
+    private static void onEdt(Runnable action) {
+        try {
+            if (SwingUtilities.isEventDispatchThread()) {
+                action.run();
+            } else {
+                SwingUtilities.invokeAndWait(action);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Компонент, рисующий текущий кадр с двойной буферизацией Swing.
+    private class FrameView extends JComponent {
+        private static final long serialVersionUID = 1L;
+
+        FrameView() {
+            setDoubleBuffered(true);
+            setOpaque(true);
+        }
+
+        @Override
+        public Dimension getPreferredSize() {
+            synchronized (lock) {
+                return front == null ? new Dimension(640, 480) : new Dimension(front.getWidth(), front.getHeight());
+            }
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            synchronized (lock) {
+                if (front != null) {
+                    g.drawImage(front, 0, 0, null);
+                }
+            }
+        }
+    }
+}
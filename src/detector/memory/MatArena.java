@@ -0,0 +1,47 @@
+package detector.memory;
+
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Область жизни временных матриц: всё, что создано через mat() или передано в track(),
+// освобождается одним вызовом release() - например, в конце обработки кадра, - а не
+// финализаторами. После release арену можно использовать снова.
+// Java-обёртка Mat сама по себе невелика и собирается сборщиком мусора; release освобождает
+// буфер данных, то есть основную часть нативной памяти. Экземпляр не потокобезопасен.
+public class MatArena implements AutoCloseable {
+    private final List<Mat> mats = new ArrayList<>();
+
+    public Mat mat() {
+        return track(new Mat());
+    }
+
+    public <T extends Mat> T track(T mat) {
+        mats.add(mat);
+        NativeStats.allocated(1);
+        return mat;
+    }
+
+    public void trackAll(List<? extends Mat> list) {
+        mats.addAll(list);
+        NativeStats.allocated(list.size());
+    }
+
+    public int size() {
+        return mats.size();
+    }
+
+    public void release() {
+        for (Mat mat : mats) {
+            mat.release();
+        }
+        NativeStats.released(mats.size());
+        mats.clear();
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+}
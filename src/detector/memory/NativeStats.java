@@ -0,0 +1,70 @@
+package detector.memory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.LongAdder;
+
+// Счётчики нативных матриц, созданных и освобождённых через MatArena и FrameTaskPool,
+// и резидентная память процесса. Считаются только матрицы, переданные арене или пулу,
+// а не все нативные выделения OpenCV (память сети, внутренние буферы слоёв, матрицы вне
+// арены) - их видно только по rss. При длительной работе live и rss должны оставаться
+// постоянными; рост live означает, что какие-то учтённые матрицы не освобождаются.
+public final class NativeStats {
+    private static final LongAdder allocated = new LongAdder();
+    private static final LongAdder released = new LongAdder();
+
+    private NativeStats() {
+    }
+
+    // Учёт матриц, которыми владеют пулы вне MatArena.
+    public static void allocated(int count) {
+        allocated.add(count);
+    }
+
+    public static void released(int count) {
+        released.add(count);
+    }
+
+    public static long allocated() {
+        return allocated.sum();
+    }
+
+    public static long released() {
+        return released.sum();
+    }
+
+    public static long live() {
+        return allocated.sum() - released.sum();
+    }
+
+    // VmRSS из /proc/self/status в байтах или -1, если он недоступен (не Linux).
+    public static long rssBytes() {
+        return status("VmRSS:");
+    }
+
+    // Наибольшая резидентная память процесса с момента запуска.
+    public static long peakRssBytes() {
+        return status("VmHWM:");
+    }
+
+    // Значение поля /proc/self/status в байтах или -1, если оно недоступно.
+    private static long status(String field) {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith(field)) {
+                    String value = line.substring(field.length()).trim();
+                    return Long.parseLong(value.substring(0, value.indexOf(' '))) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+        }
+        return -1;
+    }
+
+    public static String report() {
+        long rss = rssBytes();
+        return String.format("tracked_mats[allocated=%d released=%d live=%d] rss=%s", allocated(), released(),
+                live(), rss < 0 ? "?" : rss / (1024 * 1024) + "MB");
+    }
+}
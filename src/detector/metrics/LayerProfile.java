@@ -0,0 +1,58 @@
+package detector.metrics;
+
+import org.opencv.core.Core;
+import org.opencv.core.MatOfDouble;
+import org.opencv.dnn.Net;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Время отдельных слоёв сети по Net.getPerfProfile.
+// sample вызывается из потока инференса после forward (сеть нельзя опрашивать
+// из другого потока) и обновляет снимок не чаще раза в intervalMillis.
+public class LayerProfile {
+    private final long intervalNanos;
+    private final MatOfDouble timings = new MatOfDouble();
+    private long lastSample = Long.MIN_VALUE / 2;
+    private volatile String[] names = new String[0];
+    private volatile double[] millis = new double[0];
+    private volatile double totalMillis;
+
+    public LayerProfile(long intervalMillis) {
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    public void sample(Net network) {
+        long now = System.nanoTime();
+        if (now - lastSample < intervalNanos) {
+            return;
+        }
+        lastSample = now;
+        if (names.length == 0) {
+            List<String> layers = network.getLayerNames();
+            names = layers.toArray(new String[0]);
+        }
+        double ticksPerMilli = Core.getTickFrequency() / 1000.0;
+        long total = network.getPerfProfile(timings);
+        double[] values = timings.empty() ? new double[0] : timings.toArray();
+        for (int i = 0; i < values.length; i++) {
+            values[i] /= ticksPerMilli;
+        }
+        millis = values;
+        totalMillis = total / ticksPerMilli;
+    }
+
+    // Имена слоёв в порядке getLayerNames.
+    public String[] names() {
+        return names;
+    }
+
+    // Время слоёв последнего forward в миллисекундах (в порядке names).
+    public double[] millis() {
+        return millis;
+    }
+
+    public double totalMillis() {
+        return totalMillis;
+    }
+}
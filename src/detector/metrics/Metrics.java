@@ -0,0 +1,110 @@
+package detector.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+// Реестр метрик: гистограммы задержек этапов, счётчики и датчики.
+// Метрики регистрируются при настройке, а на горячем пути используются сохранённые ссылки,
+// поэтому запись - это несколько атомарных операций без блокировок.
+// Имя может содержать метки в формате Prometheus: queue_dropped{queue="inference"}.
+public class Metrics {
+    private final NavigableMap<String, LatencyHistogram> timers = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, LongSupplier> counters = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, DoubleSupplier> gauges = new ConcurrentSkipListMap<>();
+    private volatile LayerProfile layers;
+
+    // Гистограмма длительности этапа name.
+    public LatencyHistogram timer(String name) {
+        return timers.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    // Регистрирует уже существующую гистограмму.
+    public void timer(String name, LatencyHistogram histogram) {
+        timers.put(name, histogram);
+    }
+
+    public LongAdder counter(String name) {
+        LongAdder adder = new LongAdder();
+        counters.put(name, adder::sum);
+        return adder;
+    }
+
+    // Счётчик, значение которого хранится в другом объекте.
+    public void counter(String name, LongSupplier value) {
+        counters.put(name, value);
+    }
+
+    public void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public void layers(LayerProfile layers) {
+        this.layers = layers;
+    }
+
+    public NavigableMap<String, LatencyHistogram> timers() {
+        return timers;
+    }
+
+    public NavigableMap<String, LongSupplier> counters() {
+        return counters;
+    }
+
+    public NavigableMap<String, DoubleSupplier> gauges() {
+        return gauges;
+    }
+
+    public LayerProfile layers() {
+        return layers;
+    }
+
+    // Плоский снимок всех значений для JMX: имена без меток, время в миллисекундах.
+    public Map<String, Double> snapshot() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : timers.entrySet()) {
+            String name = flatName(entry.getKey());
+            LatencyHistogram histogram = entry.getValue();
+            values.put(name + "_count", (double) histogram.count());
+            values.put(name + "_mean_ms", histogram.meanMillis());
+            values.put(name + "_p50_ms", histogram.percentileMillis(50));
+            values.put(name + "_p99_ms", histogram.percentileMillis(99));
+            values.put(name + "_max_ms", histogram.maxMicros() / 1000.0);
+        }
+        for (Map.Entry<String, LongSupplier> entry : counters.entrySet()) {
+            values.put(flatName(entry.getKey()), (double) entry.getValue().getAsLong());
+        }
+        for (Map.Entry<String, DoubleSupplier> entry : gauges.entrySet()) {
+            values.put(flatName(entry.getKey()), entry.getValue().getAsDouble());
+        }
+        LayerProfile profile = layers;
+        if (profile != null) {
+            values.put("forward_profile_ms", profile.totalMillis());
+        }
+        return values;
+    }
+
+    // queue_dropped{queue="inference"} -> queue_dropped.inference
+    static String flatName(String name) {
+        int brace = name.indexOf('{');
+        if (brace < 0) {
+            return name;
+        }
+        StringBuilder sb = new StringBuilder(name.substring(0, brace));
+        for (String label : name.substring(brace + 1, name.length() - 1).split(",")) {
+            int eq = label.indexOf('=');
+            sb.append('.').append(label.substring(eq + 1).replace("\"", ""));
+        }
+        return sb.toString();
+    }
+
+    // Базовое имя метрики без меток.
+    static String baseName(String name) {
+        int brace = name.indexOf('{');
+        return brace < 0 ? name : name.substring(0, brace);
+    }
+}
@@ -0,0 +1,82 @@
+package detector.metrics;
+
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+// Вывод метрик в текстовом формате Prometheus (version 0.0.4).
+// Гистограммы выводятся как summary в секундах с квантилями 0.5, 0.9, 0.99.
+public final class PrometheusWriter {
+    private static final String PREFIX = "detector_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private PrometheusWriter() {
+    }
+
+    public static String write(Metrics metrics) {
+        StringBuilder sb = new StringBuilder(4096);
+        String type = null;
+        for (Map.Entry<String, LatencyHistogram> entry : metrics.timers().entrySet()) {
+            String name = PREFIX + Metrics.baseName(entry.getKey()) + "_seconds";
+            String labels = labels(entry.getKey());
+            LatencyHistogram histogram = entry.getValue();
+            type = typeLine(sb, type, name, "summary");
+            for (double quantile : QUANTILES) {
+                sb.append(name).append('{');
+                if (!labels.isEmpty()) {
+                    sb.append(labels).append(',');
+                }
+                sb.append("quantile=\"").append(quantile).append("\"} ")
+                        .append(histogram.percentileMillis(quantile * 100) / 1000.0).append('\n');
+            }
+            sb.append(name).append("_sum").append(braced(labels)).append(' ')
+                    .append(histogram.sumMicros() / 1e6).append('\n');
+            sb.append(name).append("_count").append(braced(labels)).append(' ')
+                    .append(histogram.count()).append('\n');
+        }
+        for (Map.Entry<String, LongSupplier> entry : metrics.counters().entrySet()) {
+            String name = PREFIX + Metrics.baseName(entry.getKey()) + "_total";
+            type = typeLine(sb, type, name, "counter");
+            sb.append(name).append(braced(labels(entry.getKey()))).append(' ')
+                    .append(entry.getValue().getAsLong()).append('\n');
+        }
+        for (Map.Entry<String, DoubleSupplier> entry : metrics.gauges().entrySet()) {
+            String name = PREFIX + Metrics.baseName(entry.getKey());
+            type = typeLine(sb, type, name, "gauge");
+            sb.append(name).append(braced(labels(entry.getKey()))).append(' ')
+                    .append(entry.getValue().getAsDouble()).append('\n');
+        }
+        LayerProfile profile = metrics.layers();
+        if (profile != null) {
+            String name = PREFIX + "layer_seconds";
+            sb.append("# TYPE ").append(name).append(" gauge\n");
+            String[] names = profile.names();
+            double[] millis = profile.millis();
+            for (int i = 0; i < Math.min(names.length, millis.length); i++) {
+                sb.append(name).append("{layer=\"").append(names[i]).append("\"} ")
+                        .append(millis[i] / 1000.0).append('\n');
+            }
+            sb.append("# TYPE ").append(PREFIX).append("forward_profile_seconds gauge\n")
+                    .append(PREFIX).append("forward_profile_seconds ")
+                    .append(profile.totalMillis() / 1000.0).append('\n');
+        }
+        return sb.toString();
+    }
+
+    // Строка # TYPE выводится один раз для всех меток одной метрики; возвращает текущее имя.
+    private static String typeLine(StringBuilder sb, String previous, String name, String type) {
+        if (!name.equals(previous)) {
+            sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+        return name;
+    }
+
+    private static String labels(String name) {
+        int brace = name.indexOf('{');
+        return brace < 0 ? "" : name.substring(brace + 1, name.length() - 1);
+    }
+
+    private static String braced(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+}
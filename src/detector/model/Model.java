@@ -0,0 +1,45 @@
+package detector.model;
+
+import detector.InputGeometry;
+import detector.Precision;
+import org.opencv.core.Scalar;
+import org.opencv.dnn.Net;
+
+import java.util.List;
+
+// Загруженная модель: сеть, её выходные слои, метки и цвета классов и геометрия входа.
+// Сеть не потокобезопасна, поэтому моделью одновременно пользуется один поток инференса;
+// остальные поля неизменяемы и читаются любыми стадиями.
+public class Model {
+    public final ModelSpec spec;
+    public final Net network;
+    public final List<String> outputNames;
+    public final List<String> labels;
+    public final Scalar[] colors;
+    public final InputGeometry geometry;
+    // Запрошенная точность; FP16 без поддержки устройства фактически остаётся FP32.
+    public final Precision precision;
+    // Время загрузки и прогрева в миллисекундах.
+    public final long loadMillis;
+
+    Model(ModelSpec spec, Net network, List<String> outputNames, List<String> labels, Scalar[] colors,
+          InputGeometry geometry, Precision precision, long loadMillis) {
+        this.spec = spec;
+        this.network = network;
+        this.outputNames = outputNames;
+        this.labels = labels;
+        this.colors = colors;
+        this.geometry = geometry;
+        this.precision = precision;
+        this.loadMillis = loadMillis;
+    }
+
+    public String name() {
+        return spec.name;
+    }
+
+    @Override
+    public String toString() {
+        return precision == Precision.FP32 ? spec.name : spec.name + "/" + precision;
+    }
+}
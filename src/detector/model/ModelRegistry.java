@@ -0,0 +1,299 @@
+package detector.model;
+
+import detector.BackendTuner;
+import detector.InputGeometry;
+import detector.Precision;
+import detector.Yolo;
+import detector.memory.MatArena;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.dnn.Dnn;
+import org.opencv.dnn.Net;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+// Реестр моделей, описанных в файле настроек:
+//   default=yolov4
+//   yolov4.cfg=src/yolov4/yolov4.cfg
+//   yolov4.weights=src/yolov4/yolov4.weights
+//   yolov4.names=src/yolov4/yolov4.names
+//   tiny.weights=models/tiny-int8.onnx
+//   tiny.size=416
+// Загруженные модели кэшируются: acquire отдаёт свободную загруженную модель или загружает
+// новую, release возвращает модель в кэш, поэтому повторное переключение на модель не читает
+// веса заново и не прогревает сеть. Модель загружается уже настроенной (setup) и прогретой.
+// С точностью INT8 darknet-модель после загрузки квантуется по калибровочным кадрам.
+// У ONNX-модели при загрузке проверяется форма выходов (см. checkOutputs).
+// Сам разобранный Net из Java сохранить на диск нельзя, поэтому на диске (cache) хранятся
+// метаданные модели по отпечатку её файлов: размер входа и имена выходных слоёв, а также
+// время загрузки; их не нужно получать из сети заново.
+public class ModelRegistry {
+    // Настройка бэкенда новой сети.
+    public interface Setup {
+        void configure(Net network, ModelSpec spec, Size inputSize);
+    }
+
+    private final Map<String, ModelSpec> specs = new LinkedHashMap<>();
+    private final String defaultModel;
+    private final Function<int[], InputGeometry> geometry;
+    private final Setup setup;
+    private final Path cache;
+    private final Precision precision;
+    // Изображения для калибровки квантизации (INT8).
+    private final List<Path> calibration;
+    // Свободные загруженные экземпляры моделей по имени. Освободить сеть из Java можно только
+    // сборщиком мусора, поэтому возвращённые экземпляры не выбрасываются, а ждут следующего
+    // acquire; экземпляров одной модели не больше, чем их было занято одновременно.
+    private final Map<String, Deque<Model>> idle = new HashMap<>();
+
+    // geometry строит геометрию входа по размеру входа из cfg модели.
+    public ModelRegistry(Properties properties, Function<int[], InputGeometry> geometry, Setup setup, Path cache,
+                         Precision precision, List<Path> calibration) {
+        this.geometry = geometry;
+        this.setup = setup;
+        this.cache = cache;
+        this.precision = precision;
+        this.calibration = calibration;
+        for (String key : new TreeSet<>(properties.stringPropertyNames())) {
+            if (key.endsWith(".weights")) {
+                String name = key.substring(0, key.length() - 8);
+                String cfg = properties.getProperty(name + ".cfg");
+                String size = properties.getProperty(name + ".size");
+                specs.put(name, new ModelSpec(name, cfg == null ? null : Paths.get(cfg),
+                        Paths.get(properties.getProperty(key)),
+                        Paths.get(properties.getProperty(name + ".names", name + ".names")),
+                        size == null ? null : parseSize(size)));
+                if (cfg == null && size == null) {
+                    throw new IllegalArgumentException("Для модели " + name + " нужен " + name + ".cfg или "
+                            + name + ".size");
+                }
+            }
+        }
+        if (specs.isEmpty()) {
+            throw new IllegalArgumentException("В настройках реестра нет ни одной модели");
+        }
+        defaultModel = properties.getProperty("default", specs.keySet().iterator().next());
+        spec(defaultModel);
+        if (precision == Precision.INT8 && calibration.isEmpty()) {
+            for (ModelSpec spec : specs.values()) {
+                if (!spec.onnx()) {
+                    throw new IllegalArgumentException("Для INT8 нужны калибровочные изображения");
+                }
+            }
+        }
+    }
+
+    public ModelRegistry(Properties properties, Function<int[], InputGeometry> geometry, Setup setup, Path cache) {
+        this(properties, geometry, setup, cache, Precision.FP32, Collections.emptyList());
+    }
+
+    // Размер вида "416" или "416x320".
+    private static int[] parseSize(String value) {
+        String[] parts = value.trim().split("x");
+        int width = Integer.parseInt(parts[0].trim());
+        return new int[]{width, parts.length > 1 ? Integer.parseInt(parts[1].trim()) : width};
+    }
+
+    // Читает настройки из файла; если файла нет - одна модель yolov4 из src/yolov4.
+    public static Properties read(Path file) throws IOException {
+        Properties properties = new Properties();
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+        } else {
+            properties.setProperty("default", "yolov4");
+            properties.setProperty("yolov4.cfg", "src/yolov4/yolov4.cfg");
+            properties.setProperty("yolov4.weights", "src/yolov4/yolov4.weights");
+            properties.setProperty("yolov4.names", "src/yolov4/yolov4.names");
+        }
+        return properties;
+    }
+
+    // Файл кэша метаданных по умолчанию.
+    public static Path defaultCache() {
+        return Paths.get(System.getProperty("user.home"), ".imgproccesing", "models.properties");
+    }
+
+    public List<String> names() {
+        return new ArrayList<>(specs.keySet());
+    }
+
+    public String defaultModel() {
+        return defaultModel;
+    }
+
+    public ModelSpec spec(String name) {
+        ModelSpec spec = specs.get(name);
+        if (spec == null) {
+            throw new IllegalArgumentException("Неизвестная модель: " + name + ", доступны " + specs.keySet());
+        }
+        return spec;
+    }
+
+    // Свободная загруженная модель name или новая, загруженная в вызывающем потоке.
+    public Model acquire(String name) {
+        ModelSpec spec = spec(name);
+        synchronized (this) {
+            Deque<Model> models = idle.get(name);
+            if (models != null && !models.isEmpty()) {
+                return models.pop();
+            }
+        }
+        return load(spec);
+    }
+
+    // Возвращает модель, которая больше не используется, в кэш.
+    public synchronized void release(Model model) {
+        Deque<Model> models = idle.computeIfAbsent(model.name(), name -> new ArrayDeque<>());
+        if (!models.contains(model)) {
+            models.push(model);
+        }
+    }
+
+    private Model load(ModelSpec spec) {
+        long start = System.nanoTime();
+        try {
+            String fingerprint = spec.fingerprint();
+            String[] cached = cached(spec, fingerprint);
+            int[] inputSize = spec.size != null ? spec.size
+                    : cached != null ? parseSize(cached[1])
+                    : Yolo.inputSize(spec.cfg.toString());
+            InputGeometry inputGeometry = geometry.apply(inputSize);
+            Size size = new Size(inputGeometry.width, inputGeometry.height);
+
+            Net network = Dnn.readNet(spec.weights.toString(), spec.cfg == null ? "" : spec.cfg.toString());
+            List<String> outputNames = cached != null
+                    ? Arrays.asList(cached[2].split(","))
+                    : Yolo.getOutputLayerNames(network);
+            setup.configure(network, spec, size);
+            if (precision == Precision.INT8 && !spec.onnx()) {
+                network = quantize(network, inputGeometry);
+            }
+            BackendTuner.warmUp(network, size, 1);
+            List<String> labels = Yolo.labels(spec.names.toString());
+            if (spec.onnx()) {
+                checkOutputs(spec, network, outputNames, size, labels.size());
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            save(spec, fingerprint, inputSize, outputNames, millis);
+            return new Model(spec, network, outputNames, labels, Yolo.generateColors(labels.size()),
+                    inputGeometry, precision, millis);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Квантует сеть по калибровочным изображениям, подготовленным так же, как кадры;
+    // все изображения подаются одним пакетом (по одному blob на вход сети).
+    private Net quantize(Net network, InputGeometry inputGeometry) {
+        try (MatArena arena = new MatArena()) {
+            List<Mat> inputs = new ArrayList<>();
+            for (Path path : calibration) {
+                Mat image = arena.track(Imgcodecs.imread(path.toString()));
+                if (!image.empty()) {
+                    List<Mat> regions = new ArrayList<>();
+                    inputGeometry.prepare(image, regions);
+                    arena.trackAll(regions);
+                    inputs.addAll(regions);
+                }
+            }
+            if (inputs.isEmpty()) {
+                throw new IllegalArgumentException("Не удалось прочитать калибровочные изображения");
+            }
+            Mat blob = arena.track(InputGeometry.blob(inputs, inputs.size()));
+            return Precision.quantize(network, Collections.singletonList(blob));
+        }
+    }
+
+    // Выходы ONNX-модели разбираются как выходы darknet-слоёв YOLO, поэтому при загрузке
+    // проверяется их форма: [строки, 5 + классы] или [1, строки, 5 + классы], CV_32F.
+    // Модель с другим выходом (например, без objectness или с транспонированным выходом)
+    // иначе давала бы бессмысленные рамки без всякой ошибки.
+    private static void checkOutputs(ModelSpec spec, Net network, List<String> outputNames, Size size,
+                                     int classes) {
+        try (MatArena arena = new MatArena()) {
+            Mat image = arena.track(new Mat(size, CvType.CV_8UC3, new Scalar(127, 127, 127)));
+            network.setInput(arena.track(Dnn.blobFromImage(image, 1 / 255.0)));
+            List<Mat> outputs = new ArrayList<>();
+            network.forward(outputs, outputNames);
+            arena.trackAll(outputs);
+            for (int i = 0; i < outputs.size(); i++) {
+                Mat output = outputs.get(i);
+                int dims = output.dims();
+                boolean valid = output.type() == CvType.CV_32F
+                        && (dims == 2 || dims == 3 && output.size(0) == 1)
+                        && output.size(dims - 1) == 5 + classes;
+                if (!valid) {
+                    int[] shape = new int[dims];
+                    for (int d = 0; d < dims; d++) {
+                        shape[d] = output.size(d);
+                    }
+                    throw new IllegalArgumentException("Выход " + outputNames.get(i) + " модели " + spec.name
+                            + " имеет форму " + Arrays.toString(shape) + ", ожидается [строки, " + (5 + classes)
+                            + "] (cx, cy, w, h, objectness и " + classes + " оценок классов из " + spec.names
+                            + ") типа CV_32F");
+                }
+            }
+        }
+    }
+
+    // Запись кэша: отпечаток;WxH;выходные слои;время загрузки, мс - или null.
+    private synchronized String[] cached(ModelSpec spec, String fingerprint) throws IOException {
+        String value = loadCache().getProperty(cacheKey(spec));
+        if (value == null) {
+            return null;
+        }
+        String[] parts = value.split(";");
+        return parts.length == 4 && parts[0].equals(fingerprint) ? parts : null;
+    }
+
+    private synchronized void save(ModelSpec spec, String fingerprint, int[] inputSize, List<String> outputNames,
+                                   long millis) throws IOException {
+        Properties properties = loadCache();
+        properties.setProperty(cacheKey(spec), fingerprint + ";" + inputSize[0] + "x" + inputSize[1] + ";"
+                + String.join(",", outputNames) + ";" + millis);
+        if (cache.getParent() != null) {
+            Files.createDirectories(cache.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(cache)) {
+            properties.store(out, "fingerprint;input;output layers;load ms");
+        }
+    }
+
+    private Properties loadCache() throws IOException {
+        Properties properties = new Properties();
+        if (Files.exists(cache)) {
+            try (InputStream in = Files.newInputStream(cache)) {
+                properties.load(in);
+            }
+        }
+        return properties;
+    }
+
+    private String cacheKey(ModelSpec spec) {
+        return (spec.cfg == null ? "" : spec.cfg.toAbsolutePath().normalize()) + "|"
+                + spec.weights.toAbsolutePath().normalize() + "|" + precision;
+    }
+}
@@ -0,0 +1,47 @@
+package detector.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Описание модели из реестра: файлы cfg, весов и меток классов.
+// Модель darknet задаётся cfg и весами (.weights), модель ONNX - одним файлом .onnx
+// без cfg; размер её входа указывается явно (size).
+public class ModelSpec {
+    public final String name;
+    // null для модели ONNX.
+    public final Path cfg;
+    public final Path weights;
+    public final Path names;
+    // Размер входа, если cfg нет (иначе null).
+    public final int[] size;
+
+    public ModelSpec(String name, Path cfg, Path weights, Path names, int[] size) {
+        this.name = name;
+        this.cfg = cfg;
+        this.weights = weights;
+        this.names = names;
+        this.size = size;
+    }
+
+    public ModelSpec(String name, Path cfg, Path weights, Path names) {
+        this(name, cfg, weights, names, null);
+    }
+
+    public boolean onnx() {
+        return weights.getFileName().toString().endsWith(".onnx");
+    }
+
+    // Отпечаток файлов модели: размер и время изменения cfg и весов.
+    String fingerprint() throws IOException {
+        String weightsPart = Files.size(weights) + ":" + Files.getLastModifiedTime(weights).toMillis();
+        return cfg == null
+                ? weightsPart
+                : Files.size(cfg) + ":" + Files.getLastModifiedTime(cfg).toMillis() + ":" + weightsPart;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + (cfg == null ? "" : cfg + ", ") + weights + ")";
+    }
+}
@@ -0,0 +1,13 @@
+package detector.model;
+
+import java.util.concurrent.CompletableFuture;
+
+// Обработка, в которой модель можно сменить на ходу (консоль, /model).
+public interface ModelSwitch {
+    // Текущая модель.
+    Model model();
+
+    // Загружает и прогревает модель name в фоне, затем переключает на неё обработку.
+    // Результат - модель, ставшая активной.
+    CompletableFuture<Model> swapModel(String name);
+}
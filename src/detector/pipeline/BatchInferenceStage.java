@@ -0,0 +1,201 @@
+package detector.pipeline;
+
+import detector.metrics.LatencyHistogram;
+import detector.metrics.LayerProfile;
+import detector.memory.MatArena;
+import detector.model.Model;
+import detector.model.ModelRegistry;
+import org.opencv.core.Mat;
+import org.opencv.dnn.Dnn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Стадия инференса, объединяющая кадры в пакеты.
+// Пакет отправляется в сеть, когда в нём набралось maxBatch кадров или когда с момента
+// получения первого кадра прошло maxWaitMillis. Для пакета выполняется один
+// blobFromImages + forward, а выходы делятся обратно по кадрам. Во время смены модели
+// в пакет могут попасть кадры двух моделей - тогда каждая часть пакета идёт в свою сеть.
+public class BatchInferenceStage extends Stage {
+    private final ModelRegistry registry;
+    // Модель последнего пакета; прежняя после смены возвращается в реестр.
+    private Model model;
+    private final int maxBatch;
+    private final long maxWaitNanos;
+    private final List<FrameTask> batch = new ArrayList<>();
+    private final List<FrameTask> inferred = new ArrayList<>();
+    private final List<Mat> images = new ArrayList<>();
+    private final List<Mat> outputs = new ArrayList<>();
+    // Blob и выходы текущего пакета.
+    private final MatArena arena = new MatArena();
+
+    // Статистика по размеру пакета: индекс - число кадров в пакете.
+    private final AtomicLongArray batches;
+    private final AtomicLongArray forwardNanos;
+    private final LatencyHistogram[] latency;
+    private final LatencyHistogram forwardTime;
+    private final LayerProfile profile;
+
+    public BatchInferenceStage(String name, StageQueue<FrameTask> in, StageQueue<FrameTask> out,
+                               ModelRegistry registry, int maxBatch, long maxWaitMillis,
+                               LatencyHistogram forwardTime, LayerProfile profile) {
+        super(name, in, out, null);
+        this.forwardTime = forwardTime;
+        this.profile = profile;
+        this.registry = registry;
+        this.maxBatch = maxBatch;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        batches = new AtomicLongArray(maxBatch + 1);
+        forwardNanos = new AtomicLongArray(maxBatch + 1);
+        latency = new LatencyHistogram[maxBatch + 1];
+        for (int i = 1; i <= maxBatch; i++) {
+            latency[i] = new LatencyHistogram();
+        }
+    }
+
+    @Override
+    public void run() {
+        boolean end = false;
+        try {
+            while (!end && !Thread.currentThread().isInterrupted()) {
+                // Ждём первый кадр пакета сколько угодно, остальные - до истечения maxWaitNanos.
+                FrameTask task = in.take();
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (!task.isEnd()) {
+                    batch.add(task);
+                    if (batch.size() == maxBatch) {
+                        break;
+                    }
+                    long left = deadline - System.nanoTime();
+                    task = left > 0 ? in.poll(left, TimeUnit.NANOSECONDS) : null;
+                    if (task == null) {
+                        break;
+                    }
+                }
+                end = task != null && task.isEnd();
+                if (!batch.isEmpty()) {
+                    infer();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (FrameTask task : batch) {
+                task.release();
+            }
+            batch.clear();
+            try {
+                out.put(FrameTask.END);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void infer() throws InterruptedException {
+        // Кадры, для которых инференс пропущен, проходят дальше в общем порядке.
+        for (FrameTask task : batch) {
+            if (!task.reuseDetections) {
+                inferred.add(task);
+            }
+        }
+        int size = inferred.size();
+        long start = System.nanoTime();
+        try {
+            // Подряд идущие кадры одной модели.
+            for (int from = 0; from < size; ) {
+                int to = from + 1;
+                while (to < size && inferred.get(to).model == inferred.get(from).model) {
+                    to++;
+                }
+                forward(inferred.get(from).model, inferred.subList(from, to));
+                from = to;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            for (FrameTask task : batch) {
+                task.release();
+            }
+            batch.clear();
+            inferred.clear();
+            return;
+        }
+
+        long end = System.nanoTime();
+        if (size > 0) {
+            record(size, end - start);
+            batches.incrementAndGet(size);
+            forwardNanos.addAndGet(size, end - start);
+        }
+        for (FrameTask task : batch) {
+            if (!task.reuseDetections) {
+                latency[size].recordNanos(end - task.capturedNanos);
+            }
+            out.put(task);
+        }
+        batch.clear();
+        inferred.clear();
+    }
+
+    private void forward(Model next, List<FrameTask> tasks) {
+        if (next != model) {
+            if (model != null) {
+                registry.release(model);
+            }
+            model = next;
+        }
+        try {
+            for (FrameTask task : tasks) {
+                images.add(task.frameResized);
+            }
+            Mat blob = arena.track(Dnn.blobFromImages(images, 1 / 255.0));
+            long forwardStart = System.nanoTime();
+            model.network.setInput(blob);
+            model.network.forward(outputs, model.outputNames);
+            arena.trackAll(outputs);
+            forwardTime.recordNanos(System.nanoTime() - forwardStart);
+            profile.sample(model.network);
+            split(outputs, tasks);
+        } finally {
+            images.clear();
+            // Части выходов у кадров ссылаются на данные пакета и держат их до release кадра.
+            arena.release();
+            outputs.clear();
+        }
+    }
+
+    // Делит выходы пакета по кадрам. Выход слоя имеет форму [N, строки, столбцы]
+    // (или [строки, столбцы] при N = 1); каждому кадру достаётся его блок строк
+    // в виде двумерной матрицы, ссылающейся на данные пакета.
+    static void split(List<Mat> outputs, List<FrameTask> tasks) {
+        int n = tasks.size();
+        for (Mat output : outputs) {
+            int cols = output.size(output.dims() - 1);
+            int rows = (int) (output.total() / cols);
+            Mat flat = output.reshape(1, rows);
+            int rowsPerFrame = rows / n;
+            for (int i = 0; i < n; i++) {
+                FrameTask task = tasks.get(i);
+                task.outputs.add(task.arena.track(flat.rowRange(i * rowsPerFrame, (i + 1) * rowsPerFrame)));
+            }
+            flat.release();
+        }
+    }
+
+    // Пропускная способность и задержка (от захвата до конца инференса) по размерам пакета.
+    public String batchReport() {
+        StringBuilder sb = new StringBuilder();
+        for (int size = 1; size <= maxBatch; size++) {
+            long count = batches.get(size);
+            if (count == 0) {
+                continue;
+            }
+            double fps = size * count / (forwardNanos.get(size) / 1e9);
+            sb.append(String.format("%n  batch=%d: batches=%d fps=%.1f latency %s",
+                    size, count, fps, latency[size].summary()));
+        }
+        return sb.toString();
+    }
+}
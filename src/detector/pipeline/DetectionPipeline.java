@@ -0,0 +1,363 @@
+package detector.pipeline;
+
+import detector.InputGeometry;
+import detector.Tracker;
+import detector.YoloDecoder;
+import detector.memory.NativeStats;
+import detector.model.Model;
+import detector.model.ModelRegistry;
+import detector.model.ModelSwitch;
+import detector.record.EventRecorder;
+import detector.record.EventTrigger;
+import detector.shm.DetectionRing;
+import detector.metrics.LatencyHistogram;
+import detector.metrics.LayerProfile;
+import detector.metrics.Metrics;
+import detector.display.FrameSink;
+import org.opencv.core.Mat;
+import org.opencv.dnn.Net;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+// Конвейер обработки видеопотока: захват, подготовка, инференс, постобработка и
+// отображение выполняются в отдельных потоках и связаны ограниченными очередями.
+// Пропускная способность конвейера определяется самой медленной стадией.
+// Модель можно сменить на ходу (swapModel): новая модель загружается и прогревается
+// в фоне, после чего кадры начинают готовиться уже для неё; кадры, подготовленные
+// для прежней модели, доходят до конца с ней.
+public class DetectionPipeline implements ModelSwitch {
+    private final List<Stage> stages = new ArrayList<>();
+    private final List<StageQueue<FrameTask>> queues = new ArrayList<>();
+    private final BatchInferenceStage batchStage;
+    private final LatestFrameGrabber grabber;
+    private final InferenceGate gate;
+    private final DetectionRing ring;
+    private final EventRecorder recorder;
+    private final Metrics metrics = new Metrics();
+    private volatile long startNanos = System.nanoTime();
+    private final ModelRegistry registry;
+    // Модель, для которой готовятся новые кадры.
+    private final AtomicReference<Model> active;
+    // Модель последнего кадра в потоке инференса без пакетов.
+    private Model inferenceModel;
+    // Активная модель, если с ней уже подготовлен кадр для инференса (иначе null); такую модель
+    // вернёт в реестр стадия инференса, остальные сменённые модели возвращает swapModel.
+    // Чтение и запись - под блокировкой active.
+    private Model prepared;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "model-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LongAdder swaps;
+
+    public DetectionPipeline(VideoCapture cap, ModelRegistry registry, Model model, FrameSink sink,
+                             PipelineConfig config) throws IOException {
+        this.registry = registry;
+        this.active = new AtomicReference<>(model);
+        this.swaps = metrics.counter("model_swaps");
+        for (String name : PipelineConfig.QUEUES) {
+            // Очередь перед пакетным инференсом должна вмещать целый пакет.
+            int capacity = name.equals("inference")
+                    ? Math.max(config.queueCapacity, config.batchSize)
+                    : config.queueCapacity;
+            queues.add(new StageQueue<>(name, capacity, config.policyFor(name), FrameTask::release));
+        }
+        // Кадров в обращении не больше, чем мест в очередях, плюс по одному в каждой стадии
+        // и пакет в стадии инференса.
+        int capacity = PipelineConfig.QUEUES.length + config.batchSize;
+        for (StageQueue<FrameTask> queue : queues) {
+            capacity += queue.capacity();
+        }
+        FrameTaskPool pool = new FrameTaskPool(capacity);
+
+        // Извлекаем кадр из видеопотока. В режиме latestFrame кадры вычитываются
+        // непрерывно, а стадия получает только самый свежий из них.
+        // В режиме loop файл после последнего кадра читается сначала.
+        if (config.latestFrame) {
+            grabber = new LatestFrameGrabber(cap, config.loop);
+            stages.add(new Stage("capture", pool, queues.get(0), task -> grabber.read(task.frame)));
+        } else {
+            grabber = null;
+            stages.add(new Stage("capture", pool, queues.get(0), task -> read(cap, task.frame, config.loop)));
+        }
+
+        gate = config.detectEvery > 1 || config.motionGate || config.latencyBudgetMillis > 0
+                ? new InferenceGate(config.detectEvery, config.motionGate, config.motionFraction,
+                        config.latencyBudgetMillis, config.maxSkipMillis)
+                : null;
+
+        // Изменяем размер кадра и формируем blob для нейронной сети.
+        // При пакетном инференсе blob формируется сразу для всего пакета.
+        // Тайлы одного кадра уже составляют пакет, поэтому с ними кадры в пакеты не объединяются.
+        // Кадры, которые отсеял gate, идут дальше без подготовки и инференса.
+        boolean batched = config.batchSize > 1 && !model.geometry.tiled();
+        List<Mat> inputs = new ArrayList<>();
+        LatencyHistogram resizeTime = metrics.timer("step{step=\"resize\"}");
+        LatencyHistogram blobTime = metrics.timer("step{step=\"blob\"}");
+        stages.add(new Stage("preprocess", queues.get(0), queues.get(1), task -> {
+            if (gate != null && !gate.shouldInfer(task.frame)) {
+                task.model = active.get();
+                task.reuseDetections = true;
+                return true;
+            }
+            task.model = prepare();
+            InputGeometry geometry = task.model.geometry;
+            long start = System.nanoTime();
+            if (batched) {
+                geometry.prepare(task.frame, geometry.regions(task.frame.cols(), task.frame.rows())[0],
+                        task.frameResized);
+                resizeTime.recordNanos(System.nanoTime() - start);
+            } else {
+                int count = geometry.prepare(task.frame, inputs);
+                long resized = System.nanoTime();
+                resizeTime.recordNanos(resized - start);
+                task.blob = task.arena.track(InputGeometry.blob(inputs, count));
+                blobTime.recordNanos(System.nanoTime() - resized);
+            }
+            return true;
+        }));
+
+        // Извлекаем данные с выходных слоев нейронной сети.
+        // Время слоёв снимается в потоке инференса раз в секунду.
+        LatencyHistogram forwardTime = metrics.timer("step{step=\"forward\"}");
+        LayerProfile profile = new LayerProfile(1000);
+        metrics.layers(profile);
+        if (batched) {
+            batchStage = new BatchInferenceStage("inference", queues.get(1), queues.get(2),
+                    registry, config.batchSize, config.batchWaitMillis, forwardTime, profile);
+            stages.add(batchStage);
+        } else {
+            batchStage = null;
+            stages.add(new Stage("inference", queues.get(1), queues.get(2), task -> {
+                if (task.reuseDetections) {
+                    return true;
+                }
+                if (task.model != inferenceModel) {
+                    // Кадров прежней модели больше не будет - возвращаем её в реестр.
+                    if (inferenceModel != null) {
+                        registry.release(inferenceModel);
+                    }
+                    inferenceModel = task.model;
+                }
+                Net network = task.model.network;
+                long start = System.nanoTime();
+                network.setInput(task.blob);
+                network.forward(task.outputs, task.model.outputNames);
+                task.arena.trackAll(task.outputs);
+                forwardTime.recordNanos(System.nanoTime() - start);
+                profile.sample(network);
+                return true;
+            }));
+        }
+
+        // Обнаруживаем объекты, наносим рамки на кадр и публикуем детекции.
+        ring = config.publishPath != null ? new DetectionRing(Paths.get(config.publishPath), config.publishCapacity)
+                : null;
+        EventTrigger trigger = config.recordDir != null
+                ? EventTrigger.parse(config.recordClasses, model.labels, config.recordScore)
+                : null;
+        recorder = config.recordDir != null
+                ? new EventRecorder(Paths.get(config.recordDir), config.recordPreRollSeconds,
+                        config.recordCooldownSeconds, config.recordBudgetBytes, config.recordFps)
+                : null;
+        YoloDecoder decoder = new YoloDecoder(config.parallelDecode ? ForkJoinPool.commonPool() : null);
+        stages.add(new Stage("postprocess", queues.get(2), queues.get(3),
+                new Postprocessor(decoder, config.minProbability, config.threshold, config.perClassNms,
+                        config.track ? new Tracker() : null, ring, trigger, metrics)));
+
+        LatencyHistogram latency = metrics.timer("latency");
+        stages.add(new Stage("display", queues.get(3), null, task -> {
+            sink.show(task.frame);
+            if (recorder != null) {
+                recorder.offer(task.frame, task.capturedNanos, task.event);
+            }
+            latency.recordNanos(System.nanoTime() - task.capturedNanos);
+            if (gate != null && !task.reuseDetections) {
+                gate.completed(System.nanoTime() - task.capturedNanos);
+            }
+            return true;
+        }));
+        registerMetrics();
+    }
+
+    // Читает кадр; в режиме loop по достижении конца файла перематывает его на начало.
+    static boolean read(VideoCapture cap, Mat frame, boolean loop) {
+        if (cap.read(frame)) {
+            return true;
+        }
+        return loop && cap.set(Videoio.CAP_PROP_POS_FRAMES, 0) && cap.read(frame);
+    }
+
+    // Метрики конвейера: время стадий и этапов, счётчики кадров, детекций и выброшенных кадров.
+    private void registerMetrics() {
+        for (Stage stage : stages) {
+            metrics.timer("stage{stage=\"" + stage.name() + "\"}", stage.latency());
+        }
+        Stage last = stages.get(stages.size() - 1);
+        metrics.counter("frames", last::processed);
+        metrics.gauge("fps", this::fps);
+        for (StageQueue<FrameTask> queue : queues) {
+            metrics.counter("queue_dropped{queue=\"" + queue.name() + "\"}", queue::dropped);
+            metrics.gauge("queue_depth{queue=\"" + queue.name() + "\"}", queue::depth);
+        }
+        if (grabber != null) {
+            metrics.counter("stale_frames", grabber::stale);
+        }
+        if (ring != null) {
+            metrics.counter("published_detections", ring::published);
+        }
+        if (recorder != null) {
+            metrics.counter("record_clips", recorder::clips);
+            metrics.counter("record_frames", recorder::written);
+            metrics.counter("record_dropped", recorder::dropped);
+            metrics.counter("record_skipped", recorder::skipped);
+            metrics.gauge("record_buffer_bytes", recorder::bufferedBytes);
+        }
+        metrics.gauge("tracked_mats_live", NativeStats::live);
+        metrics.counter("tracked_mats_allocated", NativeStats::allocated);
+        metrics.gauge("process_rss_bytes", NativeStats::rssBytes);
+    }
+
+    @Override
+    public Model model() {
+        return active.get();
+    }
+
+    // Активная модель для кадра, который пойдёт в инференс.
+    private Model prepare() {
+        synchronized (active) {
+            prepared = active.get();
+            return prepared;
+        }
+    }
+
+    // Новые кадры готовятся для новой модели, кадры в обработке доходят до конца с прежней.
+    // Прежнюю модель, с которой не подготовлено ни одного кадра (например, при быстрой смене
+    // A -> B -> C модель B), стадия инференса не увидит, поэтому она возвращается в реестр здесь.
+    @Override
+    public CompletableFuture<Model> swapModel(String name) {
+        registry.spec(name);
+        return CompletableFuture.supplyAsync(() -> {
+            Model current = active.get();
+            if (current.name().equals(name)) {
+                return current;
+            }
+            Model next = registry.acquire(name);
+            Model previous;
+            boolean unused;
+            synchronized (active) {
+                previous = active.getAndSet(next);
+                unused = previous != prepared;
+                prepared = null;
+            }
+            if (unused) {
+                registry.release(previous);
+            }
+            swaps.increment();
+            return next;
+        }, loader);
+    }
+
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    public void start() {
+        startNanos = System.nanoTime();
+        if (grabber != null) {
+            grabber.start();
+        }
+        for (Stage stage : stages) {
+            stage.start();
+        }
+    }
+
+    // Ждёт, пока последний кадр пройдёт через все стадии.
+    public void awaitCompletion() throws InterruptedException {
+        for (Stage stage : stages) {
+            stage.join();
+        }
+    }
+
+    // Ждёт завершения не дольше timeoutMillis; возвращает true, если конвейер завершился.
+    public boolean awaitCompletion(long timeoutMillis) throws InterruptedException {
+        Stage last = stages.get(stages.size() - 1);
+        last.join(timeoutMillis);
+        return !last.isAlive();
+    }
+
+    public void stop() throws InterruptedException {
+        for (Stage stage : stages) {
+            stage.interrupt();
+        }
+        if (grabber != null) {
+            grabber.close();
+        }
+        awaitCompletion();
+        loader.shutdownNow();
+        if (ring != null) {
+            try {
+                ring.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (recorder != null) {
+            recorder.close();
+        }
+        for (StageQueue<FrameTask> queue : queues) {
+            queue.clear();
+        }
+    }
+
+    public List<StageQueue<FrameTask>> queues() {
+        return queues;
+    }
+
+    public List<Stage> stages() {
+        return stages;
+    }
+
+    // Количество кадров в секунду на выходе конвейера с момента запуска.
+    public double fps() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return stages.get(stages.size() - 1).processed() / seconds;
+    }
+
+    // Строка со сводкой: FPS, среднее время стадий и заполненность очередей.
+    public String report() {
+        StringBuilder sb = new StringBuilder(String.format("fps=%.1f model=%s", fps(), active.get()));
+        for (Stage stage : stages) {
+            sb.append(String.format(" %s=%.1fms", stage.name(), stage.meanMillis()));
+        }
+        for (StageQueue<FrameTask> queue : queues) {
+            sb.append(' ').append(queue);
+        }
+        if (grabber != null) {
+            sb.append(" stale=").append(grabber.stale());
+        }
+        if (gate != null) {
+            sb.append(' ').append(gate.report());
+        }
+        if (batchStage != null) {
+            sb.append(batchStage.batchReport());
+        }
+        if (recorder != null) {
+            sb.append(' ').append(recorder.report());
+        }
+        sb.append(' ').append(NativeStats.report());
+        return sb.toString();
+    }
+}
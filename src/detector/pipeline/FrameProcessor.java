@@ -0,0 +1,8 @@
+package detector.pipeline;
+
+// Обработка кадра на одной стадии конвейера.
+@FunctionalInterface
+public interface FrameProcessor {
+    // Возвращает false, если кадр нужно выбросить и не передавать дальше.
+    boolean process(FrameTask task) throws Exception;
+}
@@ -0,0 +1,76 @@
+package detector.pipeline;
+
+import detector.memory.MatArena;
+import detector.model.Model;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Кадр, проходящий через стадии конвейера, вместе с промежуточными данными.
+// Кадр из FrameTaskPool после release возвращается в пул вместе с буферами frame и
+// frameResized; blob и выходы сети живут только до конца обработки кадра.
+public class FrameTask {
+    // Маркер конца видеопотока.
+    static final FrameTask END = new FrameTask(-1);
+
+    public long sequence;
+    public long capturedNanos;
+    public final Mat frame = new Mat();
+    public final Mat frameResized = new Mat();
+    public Mat blob;
+    public final List<Mat> outputs = new ArrayList<>();
+    // Временные матрицы кадра (blob, выходы сети и их части), освобождаемые в release.
+    public final MatArena arena = new MatArena();
+    // Инференс для кадра пропущен: на него наносятся детекции предыдущего кадра.
+    public boolean reuseDetections;
+    // В кадре есть объект, по которому начинается запись (EventTrigger).
+    public boolean event;
+    // Модель, для которой подготовлен кадр: по ней выполняются инференс и разбор выходов.
+    public Model model;
+
+    private final FrameTaskPool pool;
+    // Кадр лежит в пуле; защищает от повторного возврата.
+    private boolean pooled;
+
+    public FrameTask(long sequence) {
+        this.pool = null;
+        reset(sequence);
+    }
+
+    FrameTask(FrameTaskPool pool) {
+        this.pool = pool;
+    }
+
+    void reset(long sequence) {
+        this.sequence = sequence;
+        this.capturedNanos = System.nanoTime();
+        this.reuseDetections = false;
+        this.event = false;
+        this.model = null;
+        this.pooled = false;
+    }
+
+    public boolean isEnd() {
+        return this == END;
+    }
+
+    // Освобождает временные матрицы кадра. Кадр из пула возвращается в пул,
+    // у остальных освобождаются и буферы кадра.
+    public void release() {
+        if (isEnd() || pooled) {
+            return;
+        }
+        arena.release();
+        blob = null;
+        model = null;
+        outputs.clear();
+        if (pool != null) {
+            pooled = true;
+            pool.recycle(this);
+        } else {
+            frame.release();
+            frameResized.release();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package detector.pipeline;
+
+import detector.memory.NativeStats;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Пул кадров конвейера. Возвращённый кадр сохраняет буферы frame и frameResized,
+// поэтому cap.read и resize при неизменном размере кадра пишут в ту же память,
+// а не выделяют её на каждом кадре. Лишние кадры сверх capacity освобождаются.
+public class FrameTaskPool {
+    private final ArrayBlockingQueue<FrameTask> free;
+
+    public FrameTaskPool(int capacity) {
+        free = new ArrayBlockingQueue<>(capacity);
+    }
+
+    public FrameTask acquire(long sequence) {
+        FrameTask task = free.poll();
+        if (task == null) {
+            task = new FrameTask(this);
+            NativeStats.allocated(2);
+        }
+        task.reset(sequence);
+        return task;
+    }
+
+    void recycle(FrameTask task) {
+        if (!free.offer(task)) {
+            task.frame.release();
+            task.frameResized.release();
+            NativeStats.released(2);
+        }
+    }
+
+    public int size() {
+        return free.size();
+    }
+}
@@ -0,0 +1,120 @@
+package detector.pipeline;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Решает, нужен ли инференс для очередного кадра.
+// 0. Инференс выполняется не чаще чем на каждом every-м кадре (между ними работает трекер).
+// 1. Детектор движения: кадр уменьшается до 64 пикселей по ширине в оттенках серого
+//    и сравнивается с кадром последнего инференса. Если изменилась доля пикселей меньше
+//    motionFraction, используются прежние детекции (но не дольше maxSkipMillis).
+// 2. Регулятор частоты: между запусками инференса выдерживается интервал, который
+//    растёт, когда задержка от захвата до отображения превышает бюджет, и плавно
+//    уменьшается, когда задержка в пределах бюджета.
+// shouldInfer вызывается из одного потока, completed - из любого.
+public class InferenceGate {
+    private static final int MOTION_WIDTH = 64;
+    private static final int PIXEL_THRESHOLD = 25;
+
+    private final int every;
+    private final boolean motion;
+    private final double motionFraction;
+    private final long budgetNanos;
+    private final long maxSkipNanos;
+
+    private final Mat small = new Mat();
+    private final Mat gray = new Mat();
+    private final Mat reference = new Mat();
+    private final Mat diff = new Mat();
+    private long lastInference = Long.MIN_VALUE / 2;
+    private int framesSinceInference = Integer.MAX_VALUE / 2;
+
+    // Интервал между инференсами и сглаженная задержка, в наносекундах.
+    private volatile long intervalNanos;
+    private volatile long latencyNanos;
+
+    private final AtomicLong inferred = new AtomicLong();
+    private final AtomicLong skippedEvery = new AtomicLong();
+    private final AtomicLong skippedStatic = new AtomicLong();
+    private final AtomicLong skippedRate = new AtomicLong();
+
+    public InferenceGate(int every, boolean motion, double motionFraction, long budgetMillis, long maxSkipMillis) {
+        this.every = every;
+        this.motion = motion;
+        this.motionFraction = motionFraction;
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.maxSkipNanos = TimeUnit.MILLISECONDS.toNanos(maxSkipMillis);
+    }
+
+    public boolean shouldInfer(Mat frame) {
+        if (++framesSinceInference < every) {
+            skippedEvery.incrementAndGet();
+            return false;
+        }
+        long now = System.nanoTime();
+        long since = now - lastInference;
+        if (since < intervalNanos) {
+            skippedRate.incrementAndGet();
+            return false;
+        }
+
+        if (motion) {
+            Imgproc.resize(frame, small, new Size(MOTION_WIDTH,
+                    Math.max(1, Math.round(frame.rows() * (double) MOTION_WIDTH / frame.cols()))),
+                    0, 0, Imgproc.INTER_AREA);
+            if (small.channels() == 1) {
+                small.copyTo(gray);
+            } else {
+                Imgproc.cvtColor(small, gray, Imgproc.COLOR_BGR2GRAY);
+            }
+            if (since < maxSkipNanos && !changed()) {
+                skippedStatic.incrementAndGet();
+                return false;
+            }
+            gray.copyTo(reference);
+        }
+
+        lastInference = now;
+        framesSinceInference = 0;
+        inferred.incrementAndGet();
+        return true;
+    }
+
+    // Изменилась ли заметная доля пикселей относительно кадра последнего инференса.
+    private boolean changed() {
+        if (reference.empty() || reference.size().width != gray.size().width
+                || reference.size().height != gray.size().height) {
+            return true;
+        }
+        Core.absdiff(gray, reference, diff);
+        Imgproc.threshold(diff, diff, PIXEL_THRESHOLD, 255, Imgproc.THRESH_BINARY);
+        return Core.countNonZero(diff) > motionFraction * diff.total();
+    }
+
+    // Сообщает задержку от захвата до отображения кадра, прошедшего через инференс.
+    public void completed(long latency) {
+        if (budgetNanos <= 0) {
+            return;
+        }
+        long smoothed = latencyNanos == 0 ? latency : (latencyNanos * 7 + latency) / 8;
+        latencyNanos = smoothed;
+        if (smoothed > budgetNanos) {
+            // Превышен бюджет: увеличиваем интервал в полтора раза (минимум на 5 мс).
+            intervalNanos = Math.min(TimeUnit.SECONDS.toNanos(5),
+                    Math.max(intervalNanos + TimeUnit.MILLISECONDS.toNanos(5), intervalNanos * 3 / 2));
+        } else {
+            intervalNanos = Math.max(0, intervalNanos - TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    public String report() {
+        return String.format("gate[inferred=%d every=%d static=%d rate=%d interval=%.0fms latency=%.0fms]",
+                inferred.get(), skippedEvery.get(), skippedStatic.get(), skippedRate.get(),
+                intervalNanos / 1e6, latencyNanos / 1e6);
+    }
+}
@@ -0,0 +1,101 @@
+package detector.pipeline;
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+// Постоянно вычитывает кадры из видеопотока в отдельном потоке (grab без декодирования),
+// чтобы буфер захвата не накапливал устаревшие кадры. read декодирует только самый
+// свежий кадр; все кадры, захваченные между двумя вызовами read, выбрасываются.
+// Файлы читаются со своей частотой кадров, как камера; если loop, файл после последнего
+// кадра читается сначала.
+public class LatestFrameGrabber implements AutoCloseable {
+    private final VideoCapture cap;
+    private final boolean loop;
+    private final Thread thread;
+    private long grabbed;
+    private long retrieved;
+    private long stale;
+    private boolean ended;
+
+    public LatestFrameGrabber(VideoCapture cap) {
+        this(cap, false);
+    }
+
+    public LatestFrameGrabber(VideoCapture cap, boolean loop) {
+        this.cap = cap;
+        this.loop = loop;
+        thread = new Thread(this::grabLoop, "grabber");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void grabLoop() {
+        double fps = cap.get(Videoio.CAP_PROP_FPS);
+        boolean file = cap.get(Videoio.CAP_PROP_FRAME_COUNT) > 0;
+        long frameNanos = file && fps > 0 ? (long) (1e9 / fps) : 0;
+        long next = System.nanoTime();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                boolean ok;
+                synchronized (this) {
+                    ok = cap.grab() || loop && file && cap.set(Videoio.CAP_PROP_POS_FRAMES, 0) && cap.grab();
+                    if (ok) {
+                        grabbed++;
+                    }
+                    notifyAll();
+                }
+                if (!ok) {
+                    break;
+                }
+                if (frameNanos > 0) {
+                    next += frameNanos;
+                    long sleep = next - System.nanoTime();
+                    if (sleep > 0) {
+                        Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                ended = true;
+                notifyAll();
+            }
+        }
+    }
+
+    // Ждёт кадр, которого ещё не было, и декодирует его в frame.
+    // Возвращает false, когда видеопоток закончился.
+    public synchronized boolean read(Mat frame) throws InterruptedException {
+        while (grabbed == retrieved && !ended) {
+            wait();
+        }
+        if (grabbed == retrieved) {
+            return false;
+        }
+        stale += grabbed - retrieved - 1;
+        retrieved = grabbed;
+        return cap.retrieve(frame);
+    }
+
+    // Число захваченных, но так и не декодированных кадров.
+    public synchronized long stale() {
+        return stale;
+    }
+
+    // Останавливает поток захвата и ждёт его; прерывание ожидания сохраняется во флаге потока.
+    @Override
+    public void close() {
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package detector.pipeline;
+
+// Поведение очереди между стадиями при переполнении.
+public enum OverflowPolicy {
+    // Производитель ждёт, пока потребитель освободит место.
+    BLOCK,
+    // Самый старый кадр выбрасывается, чтобы положить новый.
+    DROP_OLDEST;
+
+    // Разбирает значение вида "block" или "drop-oldest".
+    public static OverflowPolicy parse(String value) {
+        return valueOf(value.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,84 @@
+package detector.pipeline;
+
+import detector.InputGeometry;
+import detector.shm.DetectionRing;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Настройки конвейера обработки видеопотока.
+public class PipelineConfig {
+    // Имена очередей: по имени стадии, которая из них читает.
+    public static final String[] QUEUES = {"preprocess", "inference", "postprocess", "display"};
+
+    // Размер входа сети; 0 - размер из cfg модели.
+    public int inputWidth = 0;
+    public int inputHeight = 0;
+    // Сохранять пропорции кадра, дополняя вход полями; иначе кадр растягивается.
+    public boolean letterbox = true;
+    // Разбиение кадра на tileCols x tileRows перекрывающихся тайлов (1 x 1 - без тайлов).
+    public int tileCols = 1;
+    public int tileRows = 1;
+    public float tileOverlap = 0.2f;
+    public float minProbability = 0.5f;
+    public float threshold = 0.3f;
+    // Подавлять немаксимумы отдельно внутри каждого класса.
+    public boolean perClassNms = false;
+    // Разбирать крупные выходные слои параллельно в общем пуле потоков.
+    public boolean parallelDecode = Runtime.getRuntime().availableProcessors() > 1;
+
+    // Пакетный инференс: до batchSize кадров, ожидание не дольше batchWaitMillis.
+    public int batchSize = 1;
+    public long batchWaitMillis = 20;
+
+    // Всегда брать самый свежий кадр из источника, выбрасывая устаревшие.
+    public boolean latestFrame = false;
+    // Пропускать инференс, пока кадр почти не меняется (доля изменившихся пикселей
+    // меньше motionFraction), но не дольше maxSkipMillis.
+    public boolean motionGate = false;
+    public double motionFraction = 0.01;
+    public long maxSkipMillis = 2000;
+    // Бюджет задержки от захвата до отображения; 0 - частота инференса не регулируется.
+    public long latencyBudgetMillis = 0;
+
+    // Сопровождать объекты трекером; детектор запускается на каждом detectEvery-м кадре,
+    // на остальных рамки предсказывает трекер.
+    public boolean track = false;
+    public int detectEvery = 1;
+
+    // Читать видеофайл по кругу (для длительных прогонов на локальном видео).
+    public boolean loop = false;
+
+    // Публиковать детекции в кольцевой буфер в этом файле (null - не публиковать).
+    public String publishPath = null;
+    public int publishCapacity = DetectionRing.DEFAULT_CAPACITY;
+
+    // Запись клипов в recordDir (null - не записывать), когда в кадре есть объект одного из
+    // классов recordClasses (имена через запятую) с оценкой не ниже recordScore.
+    // Клип начинается с предзаписи recordPreRollSeconds и заканчивается через
+    // recordCooldownSeconds после последнего события; сжатые кадры в памяти занимают
+    // не больше recordBudgetBytes. Частота кадров клипа берётся по времени захвата кадров
+    // предзаписи; recordFps - только если предзаписи нет.
+    public String recordDir = null;
+    public String recordClasses = "person";
+    public float recordScore = 0.6f;
+    public double recordPreRollSeconds = 5;
+    public double recordCooldownSeconds = 3;
+    public long recordBudgetBytes = 64L << 20;
+    public double recordFps = 15;
+
+    public int queueCapacity = 2;
+    public OverflowPolicy defaultPolicy = OverflowPolicy.DROP_OLDEST;
+    // Политики отдельных очередей, переопределяющие defaultPolicy.
+    public final Map<String, OverflowPolicy> policies = new HashMap<>();
+
+    // Геометрия входа для модели с размером входа modelSize из cfg.
+    public InputGeometry geometry(int[] modelSize) {
+        return new InputGeometry(inputWidth > 0 ? inputWidth : modelSize[0],
+                inputHeight > 0 ? inputHeight : modelSize[1], letterbox, tileCols, tileRows, tileOverlap);
+    }
+
+    public OverflowPolicy policyFor(String queue) {
+        return policies.getOrDefault(queue, defaultPolicy);
+    }
+}
@@ -0,0 +1,139 @@
+package detector.pipeline;
+
+import detector.Detections;
+import detector.Nms;
+import detector.Overlay;
+import detector.Tracker;
+import detector.YoloDecoder;
+import detector.metrics.LatencyHistogram;
+import detector.metrics.Metrics;
+import detector.model.Model;
+import detector.record.EventTrigger;
+import detector.shm.DetectionRing;
+import org.opencv.core.Mat;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Стадия постобработки: разбор выходов сети, подавление немаксимумов и разметка кадра.
+// Геометрия входа, метки и цвета берутся из модели кадра; при смене модели объекты
+// предыдущей модели (детекции и трекер) сбрасываются.
+public class Postprocessor implements FrameProcessor {
+    private final float minProbability;
+    private final float threshold;
+    private final YoloDecoder decoder;
+    // Модель последнего обработанного кадра.
+    private Model model;
+    private final Detections detections = new Detections();
+    private final Nms nms = new Nms();
+    private final boolean perClassNms;
+    private int[] kept = new int[0];
+    // Трекер (может отсутствовать) и номер последнего обработанного кадра.
+    private final Tracker tracker;
+    private long lastSequence = -1;
+    private final LatencyHistogram decodeTime;
+    private final LatencyHistogram nmsTime;
+    private final LatencyHistogram drawTime;
+    private final LongAdder detected;
+    // Буфер для публикации детекций (может отсутствовать).
+    private final DetectionRing ring;
+    // Условие записи клипа (может отсутствовать) и оно же для меток текущей модели.
+    private final EventTrigger trigger;
+    private EventTrigger modelTrigger;
+
+    // tracker, ring и trigger могут быть null.
+    public Postprocessor(YoloDecoder decoder, float minProbability, float threshold, boolean perClassNms,
+                         Tracker tracker, DetectionRing ring, EventTrigger trigger, Metrics metrics) {
+        this.tracker = tracker;
+        this.ring = ring;
+        this.trigger = trigger;
+        this.decodeTime = metrics.timer("step{step=\"decode\"}");
+        this.nmsTime = metrics.timer("step{step=\"nms\"}");
+        this.drawTime = metrics.timer("step{step=\"draw\"}");
+        this.detected = metrics.counter("detections");
+        this.decoder = decoder;
+        this.minProbability = minProbability;
+        this.threshold = threshold;
+        this.perClassNms = perClassNms;
+    }
+
+    @Override
+    public boolean process(FrameTask task) {
+        Mat frame = task.frame;
+        if (task.model != model) {
+            switchModel(task.model);
+        }
+        if (tracker != null) {
+            // Сдвигаем объекты на число кадров с предыдущего (часть кадров могла быть выброшена).
+            tracker.predict(lastSequence < 0 ? 1 : (int) (task.sequence - lastSequence));
+            lastSequence = task.sequence;
+        }
+        if (task.reuseDetections) {
+            // Кадр пропущен без инференса - рисуем прогноз трекера или рамки предыдущего кадра.
+            long start = System.nanoTime();
+            if (tracker != null) {
+                Overlay.draw(frame, tracker, model.labels, model.colors);
+            } else {
+                Overlay.draw(frame, detections, kept, model.labels, model.colors);
+            }
+            drawTime.recordNanos(System.nanoTime() - start);
+            publish(task);
+            return true;
+        }
+        int height = frame.height();
+        int width = frame.width();
+
+        // Обнаруживаем объекты на изображении.
+        long start = System.nanoTime();
+        detections.clear();
+        model.geometry.decode(decoder, task.outputs, width, height, minProbability, detections);
+        long decoded = System.nanoTime();
+        decodeTime.recordNanos(decoded - start);
+
+        // Применяем алгоритм подавления немаксимумов.
+        kept = nms.suppress(detections, minProbability, threshold, perClassNms);
+        long suppressed = System.nanoTime();
+        nmsTime.recordNanos(suppressed - decoded);
+        detected.add(kept.length);
+
+        // Наносим выявленные рамки на изображение.
+        if (tracker != null) {
+            tracker.update(detections, kept);
+            Overlay.draw(frame, tracker, model.labels, model.colors);
+        } else {
+            Overlay.draw(frame, detections, kept, model.labels, model.colors);
+        }
+        drawTime.recordNanos(System.nanoTime() - suppressed);
+        publish(task);
+        return true;
+    }
+
+    // Номера классов разных моделей не совпадают, поэтому объекты прежней модели выбрасываются.
+    private void switchModel(Model next) {
+        if (model != null) {
+            detections.clear();
+            kept = new int[0];
+            if (tracker != null) {
+                tracker.clear();
+            }
+        }
+        model = next;
+        modelTrigger = trigger != null ? trigger.forLabels(next.name(), next.labels) : null;
+    }
+
+    // Публикует то же, что нарисовано на кадре: объекты трекера или детекции,
+    // и отмечает кадр как событие для записи.
+    private void publish(FrameTask task) {
+        if (modelTrigger != null) {
+            task.event = tracker != null ? modelTrigger.matches(tracker) : modelTrigger.matches(detections, kept);
+        }
+        if (ring == null) {
+            return;
+        }
+        long timestamp = ring.epochNanos(task.capturedNanos);
+        if (tracker != null) {
+            ring.publish(0, task.sequence, timestamp, tracker);
+        } else {
+            ring.publish(0, task.sequence, timestamp, detections, kept);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package detector.pipeline;
+
+import detector.metrics.LatencyHistogram;
+
+// Стадия конвейера: отдельный поток, который берёт кадры из входной очереди,
+// обрабатывает их и передаёт в выходную очередь.
+public class Stage implements Runnable {
+    private final String name;
+    protected final StageQueue<FrameTask> in;
+    protected final StageQueue<FrameTask> out;
+    private final FrameProcessor processor;
+    private final FrameTaskPool source;
+    private volatile long processed;
+    private volatile long busyNanos;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private Thread thread;
+
+    // Если входной очереди нет, стадия является источником: она сама создаёт кадры,
+    // а false от processor означает конец видеопотока.
+    // Если нет выходной очереди, стадия является конечной и освобождает кадр сама.
+    public Stage(String name, StageQueue<FrameTask> in, StageQueue<FrameTask> out, FrameProcessor processor) {
+        this(name, in, null, out, processor);
+    }
+
+    // Источник, берущий кадры из пула: буферы кадров переиспользуются.
+    public Stage(String name, FrameTaskPool source, StageQueue<FrameTask> out, FrameProcessor processor) {
+        this(name, null, source, out, processor);
+    }
+
+    private Stage(String name, StageQueue<FrameTask> in, FrameTaskPool source, StageQueue<FrameTask> out,
+                  FrameProcessor processor) {
+        this.name = name;
+        this.in = in;
+        this.source = source;
+        this.out = out;
+        this.processor = processor;
+    }
+
+    public void start() {
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void interrupt() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public void join() throws InterruptedException {
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    public void join(long timeoutMillis) throws InterruptedException {
+        if (thread != null) {
+            thread.join(timeoutMillis);
+        }
+    }
+
+    public boolean isAlive() {
+        return thread != null && thread.isAlive();
+    }
+
+    @Override
+    public void run() {
+        long sequence = 0;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                FrameTask task = in != null ? in.take()
+                        : source != null ? source.acquire(sequence++) : new FrameTask(sequence++);
+                if (task.isEnd()) {
+                    break;
+                }
+
+                boolean passed;
+                long start = System.nanoTime();
+                try {
+                    passed = processor.process(task);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    passed = false;
+                }
+                record(1, System.nanoTime() - start);
+
+                if (!passed) {
+                    task.release();
+                    if (in == null) {
+                        break;
+                    }
+                    continue;
+                }
+                if (out != null) {
+                    out.put(task);
+                } else {
+                    task.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Сообщаем следующей стадии, что кадров больше не будет.
+            if (out != null) {
+                try {
+                    out.put(FrameTask.END);
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    // Учитывает обработку frames кадров за nanos наносекунд.
+    protected void record(int frames, long nanos) {
+        processed += frames;
+        busyNanos += nanos;
+        latency.recordNanos(nanos);
+    }
+
+    // Распределение времени одного вызова обработки (для пакета - всего пакета).
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long processed() {
+        return processed;
+    }
+
+    // Среднее время обработки одного кадра в миллисекундах.
+    public double meanMillis() {
+        long count = processed;
+        return count == 0 ? 0 : busyNanos / 1e6 / count;
+    }
+}
@@ -0,0 +1,79 @@
+package detector.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Ограниченная очередь между двумя стадиями конвейера.
+public class StageQueue<T> {
+    private final String name;
+    private final ArrayBlockingQueue<T> queue;
+    private final OverflowPolicy policy;
+    private final Consumer<T> onDrop;
+    private final AtomicLong dropped = new AtomicLong();
+
+    // onDrop вызывается для каждого выброшенного элемента, чтобы освободить его ресурсы.
+    public StageQueue(String name, int capacity, OverflowPolicy policy, Consumer<T> onDrop) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.policy = policy;
+        this.onDrop = onDrop;
+    }
+
+    public void put(T item) throws InterruptedException {
+        if (policy == OverflowPolicy.BLOCK) {
+            queue.put(item);
+            return;
+        }
+        // Освобождаем место, выбрасывая самые старые элементы.
+        while (!queue.offer(item)) {
+            T oldest = queue.poll();
+            if (oldest != null) {
+                dropped.incrementAndGet();
+                onDrop.accept(oldest);
+            }
+        }
+    }
+
+    public T take() throws InterruptedException {
+        return queue.take();
+    }
+
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    // Выбрасывает всё содержимое очереди.
+    public void clear() {
+        T item;
+        while ((item = queue.poll()) != null) {
+            onDrop.accept(item);
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public OverflowPolicy policy() {
+        return policy;
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    public int capacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + "[" + depth() + "/" + capacity() + ", dropped=" + dropped() + "]";
+    }
+}
@@ -0,0 +1,309 @@
+package detector.record;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.videoio.VideoWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Запись клипов по событиям с предзаписью.
+// offer только копирует кадр в свободный буфер и возвращается; если буферов нет, кадр
+// пропускается, поэтому запись никогда не задерживает конвейер. Поток recorder сжимает
+// кадры в JPEG и держит последние preRoll секунд в кольце. Когда в кадре происходит событие
+// (EventTrigger), начинается клип: в него уходят кадры предзаписи и все следующие кадры,
+// пока с последнего события не пройдёт cooldown. Клипы пишет отдельный поток через
+// VideoWriter (MJPG в .avi). Сжатые кадры предзаписи и ещё не записанные кадры клипов
+// вместе занимают не больше budgetBytes: в предзаписи вытесняются самые старые кадры,
+// а кадры клипа сверх бюджета выбрасываются.
+// Частота кадров клипа - фактическая частота кадров предзаписи (по времени захвата), ведь
+// кадры приходят с частотой обработки, а не источника, и часть их пропускается; fps из
+// конструктора используется, только если предзапись пуста.
+public class EventRecorder implements AutoCloseable {
+    // Кадров, ожидающих сжатия.
+    private static final int BUFFERS = 2;
+
+    private final Path dir;
+    private final long preRollNanos;
+    private final long cooldownNanos;
+    private final long budgetBytes;
+    private final double fps;
+    private final MatOfInt params;
+
+    private final ArrayBlockingQueue<Mat> freeBuffers = new ArrayBlockingQueue<>(BUFFERS);
+    private final ArrayBlockingQueue<Entry> incoming = new ArrayBlockingQueue<>(BUFFERS);
+    private final BlockingQueue<Pending> writes = new LinkedBlockingQueue<>();
+    private final Thread recorder;
+    private final Thread writer;
+
+    // Состояние потока recorder.
+    private final ArrayDeque<Compressed> preRoll = new ArrayDeque<>();
+    private Clip clip;
+    private long lastEvent;
+
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong clips = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private volatile boolean closed;
+
+    private static final class Entry {
+        final Mat frame;
+        final long nanos;
+        final boolean event;
+
+        Entry(Mat frame, long nanos, boolean event) {
+            this.frame = frame;
+            this.nanos = nanos;
+            this.event = event;
+        }
+    }
+
+    private static final class Compressed {
+        final long nanos;
+        final byte[] jpeg;
+
+        Compressed(long nanos, byte[] jpeg) {
+            this.nanos = nanos;
+            this.jpeg = jpeg;
+        }
+    }
+
+    private static final class Clip {
+        final Path path;
+        final double fps;
+        VideoWriter writer;
+        int frames;
+
+        Clip(Path path, double fps) {
+            this.path = path;
+            this.fps = fps;
+        }
+    }
+
+    // Кадр для записи в клип; frame == null - конец клипа, clip == null - конец работы.
+    private static final class Pending {
+        final Clip clip;
+        final Compressed frame;
+
+        Pending(Clip clip, Compressed frame) {
+            this.clip = clip;
+            this.frame = frame;
+        }
+    }
+
+    public EventRecorder(Path dir, double preRollSeconds, double cooldownSeconds, long budgetBytes, double fps)
+            throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.preRollNanos = (long) (preRollSeconds * 1e9);
+        this.cooldownNanos = (long) (cooldownSeconds * 1e9);
+        this.budgetBytes = budgetBytes;
+        this.fps = fps;
+        this.params = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 90);
+        for (int i = 0; i < BUFFERS; i++) {
+            freeBuffers.add(new Mat());
+        }
+        recorder = new Thread(this::recordLoop, "recorder");
+        recorder.setDaemon(true);
+        writer = new Thread(this::writeLoop, "recorder-writer");
+        writer.setDaemon(true);
+        recorder.start();
+        writer.start();
+    }
+
+    // Передаёт кадр, захваченный в момент nanos (System.nanoTime); event - в кадре событие.
+    public void offer(Mat frame, long nanos, boolean event) {
+        if (closed || frame.empty()) {
+            return;
+        }
+        Mat buffer = freeBuffers.poll();
+        if (buffer == null) {
+            skipped.incrementAndGet();
+            return;
+        }
+        frame.copyTo(buffer);
+        incoming.offer(new Entry(buffer, nanos, event));
+    }
+
+    private void recordLoop() {
+        MatOfByte bytes = new MatOfByte();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Entry entry = incoming.take();
+                Compressed frame;
+                try {
+                    Imgcodecs.imencode(".jpg", entry.frame, bytes, params);
+                    frame = new Compressed(entry.nanos, bytes.toArray());
+                } finally {
+                    freeBuffers.offer(entry.frame);
+                }
+                record(frame, entry.event);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            bytes.release();
+            if (clip != null) {
+                writes.add(new Pending(clip, null));
+                clip = null;
+            }
+            writes.add(new Pending(null, null));
+        }
+    }
+
+    private void record(Compressed frame, boolean event) {
+        if (event && clip == null) {
+            clip = new Clip(dir.resolve(clipName()), preRollFps(frame));
+            clips.incrementAndGet();
+            // Кадры предзаписи уже учтены в бюджете и переходят в очередь записи.
+            for (Compressed previous : preRoll) {
+                writes.add(new Pending(clip, previous));
+            }
+            preRoll.clear();
+        }
+        if (clip != null) {
+            if (event) {
+                lastEvent = frame.nanos;
+            }
+            if (bufferedBytes.get() + frame.jpeg.length > budgetBytes) {
+                dropped.incrementAndGet();
+            } else {
+                bufferedBytes.addAndGet(frame.jpeg.length);
+                writes.add(new Pending(clip, frame));
+            }
+            if (frame.nanos - lastEvent > cooldownNanos) {
+                writes.add(new Pending(clip, null));
+                clip = null;
+            }
+            return;
+        }
+        preRoll.addLast(frame);
+        bufferedBytes.addAndGet(frame.jpeg.length);
+        while (!preRoll.isEmpty() && (frame.nanos - preRoll.peekFirst().nanos > preRollNanos
+                || bufferedBytes.get() > budgetBytes)) {
+            bufferedBytes.addAndGet(-preRoll.removeFirst().jpeg.length);
+        }
+    }
+
+    // Частота кадров предзаписи вместе с кадром frame или fps, если предзапись пуста.
+    private double preRollFps(Compressed frame) {
+        if (preRoll.isEmpty() || frame.nanos <= preRoll.peekFirst().nanos) {
+            return fps;
+        }
+        return preRoll.size() * 1e9 / (frame.nanos - preRoll.peekFirst().nanos);
+    }
+
+    private static String clipName() {
+        return "event-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date()) + ".avi";
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                Pending pending = writes.take();
+                if (pending.clip == null) {
+                    return;
+                }
+                Clip target = pending.clip;
+                if (pending.frame == null) {
+                    if (target.writer != null) {
+                        target.writer.release();
+                        System.out.println("Записан клип " + target.path + " (" + target.frames + " кадров, "
+                                + String.format("%.1f", target.fps) + " fps)");
+                    }
+                    continue;
+                }
+                write(target, pending.frame);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Clip target, Compressed frame) {
+        MatOfByte bytes = new MatOfByte(frame.jpeg);
+        Mat image = Imgcodecs.imdecode(bytes, Imgcodecs.IMREAD_COLOR);
+        try {
+            if (target.writer == null) {
+                target.writer = new VideoWriter(target.path.toString(), VideoWriter.fourcc('M', 'J', 'P', 'G'),
+                        target.fps, image.size());
+                if (!target.writer.isOpened()) {
+                    System.err.println("Не удалось открыть " + target.path);
+                }
+            }
+            target.writer.write(image);
+            target.frames++;
+            written.incrementAndGet();
+        } finally {
+            image.release();
+            bytes.release();
+            bufferedBytes.addAndGet(-frame.jpeg.length);
+        }
+    }
+
+    // Число начатых клипов.
+    public long clips() {
+        return clips.get();
+    }
+
+    // Кадры, записанные в клипы.
+    public long written() {
+        return written.get();
+    }
+
+    // Кадры, пропущенные из-за занятого потока сжатия.
+    public long skipped() {
+        return skipped.get();
+    }
+
+    // Кадры клипов, выброшенные из-за бюджета памяти.
+    public long dropped() {
+        return dropped.get();
+    }
+
+    // Сжатые кадры в памяти: предзапись и очередь записи.
+    public long bufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    public String report() {
+        return String.format("record[clips=%d written=%d buffered=%dKB skipped=%d dropped=%d]", clips(), written(),
+                bufferedBytes() / 1024, skipped(), dropped());
+    }
+
+    // Завершает текущий клип и ждёт записи всех кадров. Если ожидание прервано, флаг
+    // прерывания сохраняется, а буферы не освобождаются: потоки записи ещё могут их использовать.
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        recorder.interrupt();
+        try {
+            recorder.join();
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        for (Entry entry : incoming) {
+            entry.frame.release();
+        }
+        for (Mat buffer : freeBuffers) {
+            buffer.release();
+        }
+        params.release();
+    }
+}
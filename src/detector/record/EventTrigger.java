@@ -0,0 +1,86 @@
+package detector.record;
+
+import detector.Detections;
+import detector.Tracker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Условие начала записи: в кадре есть объект одного из заданных классов с оценкой
+// не ниже minScore.
+public class EventTrigger {
+    private final boolean[] classes;
+    private final float minScore;
+    // Имена классов условия, чтобы перенести его на метки другой модели.
+    private final String names;
+
+    public EventTrigger(boolean[] classes, float minScore) {
+        this(classes, minScore, null);
+    }
+
+    private EventTrigger(boolean[] classes, float minScore, String names) {
+        this.classes = classes;
+        this.minScore = minScore;
+        this.names = names;
+    }
+
+    // names - имена классов через запятую из файла меток (yolov4.names, classes.names).
+    // Классы, которых нет в labels, пропускаются; о них предупреждает forLabels, через
+    // который условие переносится на каждую модель конвейера, включая первую.
+    public static EventTrigger parse(String names, List<String> labels, float minScore) {
+        return new EventTrigger(classes(names, labels, new ArrayList<>()), minScore, names);
+    }
+
+    // То же условие для модели model с метками labels. Классы, которых у модели нет,
+    // пропускаются с предупреждением; если нет ни одного, запись событий с этой моделью
+    // отключается (условие не выполняется никогда).
+    public EventTrigger forLabels(String model, List<String> labels) {
+        if (names == null) {
+            return this;
+        }
+        List<String> missing = new ArrayList<>();
+        boolean[] mapped = classes(names, labels, missing);
+        if (missing.size() == names.split(",").length) {
+            System.err.println("У модели " + model + " нет классов " + missing + ", запись событий отключена");
+        } else if (!missing.isEmpty()) {
+            System.err.println("У модели " + model + " нет классов " + missing + ", они не учитываются при записи");
+        }
+        return new EventTrigger(mapped, minScore, names);
+    }
+
+    private static boolean[] classes(String names, List<String> labels, List<String> missing) {
+        boolean[] classes = new boolean[labels.size()];
+        for (String name : names.split(",")) {
+            int index = labels.indexOf(name.trim());
+            if (index >= 0) {
+                classes[index] = true;
+            } else {
+                missing.add(name.trim());
+            }
+        }
+        return classes;
+    }
+
+    public boolean matches(Detections detections, int[] kept) {
+        for (int index : kept) {
+            if (matches(detections.classIds[index], detections.scores[index])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Видимые объекты трекера.
+    public boolean matches(Tracker tracker) {
+        for (int t = 0; t < tracker.count; t++) {
+            if (tracker.visible(t) && matches(tracker.classIds[t], tracker.scores[t])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matches(int classId, float score) {
+        return classId >= 0 && classId < classes.length && classes[classId] && score >= minScore;
+    }
+}
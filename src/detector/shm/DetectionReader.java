@@ -0,0 +1,174 @@
+package detector.shm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Читатель кольцевого буфера детекций, записанного DetectionRing (возможно, другим процессом).
+// У каждого читателя своя позиция, поэтому читателей может быть сколько угодно; они не
+// блокируют ни писателя, ни друг друга. Поля записи читаются прямо из отображённого файла
+// в переиспользуемый DetectionRecord, без промежуточных буферов и выделения памяти.
+// Если читатель отстал больше чем на capacity записей или запись затёрли во время чтения,
+// пропущенные записи учитываются в lost(). Если писатель перезапущен (изменилось время
+// создания или размер буфера в заголовке), заголовок читается заново, файл отображается
+// по новому размеру и чтение начинается с начала нового буфера. Экземпляр не потокобезопасен.
+public class DetectionReader implements AutoCloseable {
+    // Обработчик записи; record действителен только во время вызова.
+    public interface Handler {
+        void onDetection(DetectionRecord record);
+    }
+
+    private final FileChannel channel;
+    private final Path path;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private final DetectionRecord record = new DetectionRecord();
+    private long created;
+    private long next;
+    private long lost;
+
+    // Если fromStart, чтение начинается с самой старой записи в буфере, иначе - с новых записей.
+    public DetectionReader(Path path, boolean fromStart) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            map();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        created = created();
+        long published = published();
+        next = fromStart ? Math.max(0, published - capacity) : published;
+    }
+
+    public DetectionReader(Path path) throws IOException {
+        this(path, false);
+    }
+
+    // Читает заголовок и отображает файл целиком по размеру буфера из заголовка.
+    private void map() throws IOException {
+        if (channel.size() < RingLayout.HEADER_SIZE) {
+            throw new IOException("Файл не является буфером детекций: " + path);
+        }
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, RingLayout.HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(RingLayout.MAGIC_OFFSET) != RingLayout.MAGIC
+                || header.getInt(RingLayout.VERSION_OFFSET) != RingLayout.VERSION
+                || header.getInt(RingLayout.RECORD_SIZE_OFFSET) != RingLayout.RECORD_SIZE) {
+            throw new IOException("Неизвестный формат буфера детекций: " + path);
+        }
+        int size = header.getInt(RingLayout.CAPACITY_OFFSET);
+        if (size <= 0 || Integer.bitCount(size) != 1 || RingLayout.fileSize(size) > channel.size()) {
+            throw new IOException("Неверный размер буфера детекций " + size + ": " + path);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, RingLayout.fileSize(size));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        capacity = size;
+    }
+
+    // Проверяет, не перезапущен ли писатель: время создания или размер буфера в заголовке
+    // изменились. Тогда файл отображается заново и чтение начинается с начала буфера.
+    private boolean restarted() {
+        long current = created();
+        if (current == created && buffer.getInt(RingLayout.CAPACITY_OFFSET) == capacity) {
+            return false;
+        }
+        try {
+            map();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        created = created();
+        next = 0;
+        return true;
+    }
+
+    // Передаёт handler все новые записи, но не больше limit; возвращает число переданных.
+    public int poll(Handler handler, int limit) {
+        restarted();
+        long published = published();
+        if (published < next) {
+            next = 0;
+        }
+        if (published - next > capacity) {
+            lost += published - capacity - next;
+            next = published - capacity;
+        }
+        int count = 0;
+        while (next < published && count < limit) {
+            long sequence = next++;
+            if (read(sequence)) {
+                handler.onDetection(record);
+                count++;
+            } else if (restarted()) {
+                // Отметка не совпала из-за перезапуска писателя, а не из-за отставания.
+                return count;
+            } else {
+                lost++;
+            }
+        }
+        return count;
+    }
+
+    public int poll(Handler handler) {
+        return poll(handler, Integer.MAX_VALUE);
+    }
+
+    // Читает запись sequence в record; false, если её уже затёрли.
+    private boolean read(long sequence) {
+        int offset = RingLayout.recordOffset(sequence, capacity);
+        long stamp = (long) RingLayout.LONG.getAcquire(buffer, offset + RingLayout.STAMP);
+        if (stamp != sequence + 1) {
+            return false;
+        }
+        record.sequence = sequence;
+        record.timestampNanos = buffer.getLong(offset + RingLayout.TIMESTAMP);
+        record.frame = buffer.getLong(offset + RingLayout.FRAME);
+        record.stream = buffer.getInt(offset + RingLayout.STREAM);
+        record.classId = buffer.getInt(offset + RingLayout.CLASS_ID);
+        record.score = buffer.getFloat(offset + RingLayout.SCORE);
+        record.x = buffer.getFloat(offset + RingLayout.X);
+        record.y = buffer.getFloat(offset + RingLayout.Y);
+        record.w = buffer.getFloat(offset + RingLayout.W);
+        record.h = buffer.getFloat(offset + RingLayout.H);
+        record.trackId = buffer.getInt(offset + RingLayout.TRACK_ID);
+        record.index = buffer.getInt(offset + RingLayout.INDEX);
+        record.count = buffer.getInt(offset + RingLayout.COUNT);
+        // Если за время чтения отметка изменилась, писатель успел затереть запись.
+        VarHandle.loadLoadFence();
+        return (long) RingLayout.LONG.getOpaque(buffer, offset + RingLayout.STAMP) == stamp;
+    }
+
+    private long published() {
+        return (long) RingLayout.LONG.getAcquire(buffer, RingLayout.PUBLISHED_OFFSET);
+    }
+
+    private long created() {
+        return (long) RingLayout.LONG.getAcquire(buffer, RingLayout.CREATED_OFFSET);
+    }
+
+    // Число записей, которые читатель не успел прочитать.
+    public long lost() {
+        return lost;
+    }
+
+    // Число записей, ещё не переданных обработчику.
+    public long backlog() {
+        return Math.max(0, published() - next);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,26 @@
+package detector.shm;
+
+// Одна детекция, прочитанная из кольцевого буфера. DetectionReader переиспользует
+// один экземпляр, поэтому сохранять его между вызовами обработчика нельзя.
+public class DetectionRecord {
+    // Номер записи в буфере (растёт на 1 с каждой записью).
+    public long sequence;
+    public long timestampNanos;
+    public long frame;
+    public int stream;
+    public int classId;
+    public float score;
+    public float x;
+    public float y;
+    public float w;
+    public float h;
+    public int trackId;
+    public int index;
+    public int count;
+
+    @Override
+    public String toString() {
+        return String.format("#%d stream=%d frame=%d class=%d score=%.2f box=[%.0f,%.0f %.0fx%.0f] track=%d %d/%d",
+                sequence, stream, frame, classId, score, x, y, w, h, trackId, index + 1, count);
+    }
+}
@@ -0,0 +1,130 @@
+package detector.shm;
+
+import detector.Detections;
+import detector.Tracker;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+// Писатель кольцевого буфера детекций в отображённом в память файле (раскладка - RingLayout).
+// Для каждого кадра записывается по записи на детекцию; объём памяти постоянен: новые записи
+// затирают самые старые, писатель никогда не ждёт читателей. Каждая запись защищена своей
+// отметкой (stamp), поэтому читатели в других процессах читают буфер без блокировок и сами
+// обнаруживают записи, затёртые во время чтения (DetectionReader).
+// На Linux файл удобно держать в /dev/shm. Методы publish синхронизированы, чтобы буфер
+// могли разделять несколько рабочих потоков одного процесса.
+public class DetectionRing implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    // Перевод System.nanoTime во время от эпохи.
+    private final long epochOffsetNanos;
+    private long published;
+
+    // Создаёт буфер на capacity записей (округляется вверх до степени двойки, не больше 2^24).
+    // Существующий файл переиспользуется и никогда не уменьшается, чтобы у читателей,
+    // уже отобразивших его, не пропала память под отображением.
+    public DetectionRing(Path path, int capacity) throws IOException {
+        this.capacity = Integer.highestOneBit(Math.min(1 << 24, Math.max(2, capacity)) * 2 - 1);
+        long size = RingLayout.fileSize(this.capacity);
+        file = new RandomAccessFile(path.toFile(), "rw");
+        if (file.length() < size) {
+            file.setLength(size);
+        }
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        epochOffsetNanos = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+
+        // Сначала сбрасываем счётчик и отметки, затем публикуем заголовок.
+        RingLayout.LONG.setRelease(buffer, RingLayout.PUBLISHED_OFFSET, 0L);
+        for (int i = 0; i < this.capacity; i++) {
+            buffer.putLong(RingLayout.recordOffset(i, this.capacity) + RingLayout.STAMP, 0L);
+        }
+        buffer.putInt(RingLayout.VERSION_OFFSET, RingLayout.VERSION);
+        buffer.putInt(RingLayout.RECORD_SIZE_OFFSET, RingLayout.RECORD_SIZE);
+        buffer.putInt(RingLayout.CAPACITY_OFFSET, this.capacity);
+        buffer.putInt(RingLayout.MAGIC_OFFSET, RingLayout.MAGIC);
+        RingLayout.LONG.setRelease(buffer, RingLayout.CREATED_OFFSET, System.currentTimeMillis() * 1_000_000L);
+    }
+
+    public DetectionRing(Path path) throws IOException {
+        this(path, DEFAULT_CAPACITY);
+    }
+
+    // Время от эпохи для момента System.nanoTime() == nanoTime (например, FrameTask.capturedNanos).
+    public long epochNanos(long nanoTime) {
+        return epochOffsetNanos + nanoTime;
+    }
+
+    // Публикует оставленные после NMS детекции кадра.
+    public synchronized void publish(int stream, long frame, long timestampNanos, Detections detections,
+                                     int[] kept) {
+        for (int i = 0; i < kept.length; i++) {
+            int d = kept[i];
+            write(stream, frame, timestampNanos, detections.classIds[d], detections.scores[d],
+                    detections.x[d], detections.y[d], detections.w[d], detections.h[d], 0, i, kept.length);
+        }
+        RingLayout.LONG.setRelease(buffer, RingLayout.PUBLISHED_OFFSET, published);
+    }
+
+    // Публикует видимые объекты трекера вместе с их id.
+    public synchronized void publish(int stream, long frame, long timestampNanos, Tracker tracker) {
+        int count = 0;
+        for (int t = 0; t < tracker.count; t++) {
+            if (tracker.visible(t)) {
+                count++;
+            }
+        }
+        int index = 0;
+        for (int t = 0; t < tracker.count; t++) {
+            if (tracker.visible(t)) {
+                write(stream, frame, timestampNanos, tracker.classIds[t], tracker.scores[t],
+                        tracker.x[t], tracker.y[t], tracker.w[t], tracker.h[t], tracker.ids[t], index++, count);
+            }
+        }
+        RingLayout.LONG.setRelease(buffer, RingLayout.PUBLISHED_OFFSET, published);
+    }
+
+    // Запись помечается как незавершённая, заполняется и только затем получает отметку n + 1.
+    private void write(int stream, long frame, long timestampNanos, int classId, float score,
+                       float x, float y, float w, float h, int trackId, int index, int count) {
+        long sequence = published++;
+        int offset = RingLayout.recordOffset(sequence, capacity);
+        RingLayout.LONG.setOpaque(buffer, offset + RingLayout.STAMP, -1L);
+        VarHandle.storeStoreFence();
+        buffer.putLong(offset + RingLayout.TIMESTAMP, timestampNanos);
+        buffer.putLong(offset + RingLayout.FRAME, frame);
+        buffer.putInt(offset + RingLayout.STREAM, stream);
+        buffer.putInt(offset + RingLayout.CLASS_ID, classId);
+        buffer.putFloat(offset + RingLayout.SCORE, score);
+        buffer.putFloat(offset + RingLayout.X, x);
+        buffer.putFloat(offset + RingLayout.Y, y);
+        buffer.putFloat(offset + RingLayout.W, w);
+        buffer.putFloat(offset + RingLayout.H, h);
+        buffer.putInt(offset + RingLayout.TRACK_ID, trackId);
+        buffer.putInt(offset + RingLayout.INDEX, index);
+        buffer.putInt(offset + RingLayout.COUNT, count);
+        RingLayout.LONG.setRelease(buffer, offset + RingLayout.STAMP, sequence + 1);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized long published() {
+        return published;
+    }
+
+    // Отображение освобождается сборщиком мусора; читатели продолжают видеть последние записи.
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
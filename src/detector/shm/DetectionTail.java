@@ -0,0 +1,31 @@
+package detector.shm;
+
+import detector.Options;
+
+import java.nio.file.Paths;
+
+// Печатает детекции из кольцевого буфера по мере их появления, как tail -f.
+//
+// java -cp ... detector.shm.DetectionTail /dev/shm/detections.ring [--from-start]
+public class DetectionTail {
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        if (options.positional().isEmpty()) {
+            System.err.println("Укажите файл буфера детекций");
+            return;
+        }
+        try (DetectionReader reader = new DetectionReader(Paths.get(options.positional().get(0)),
+                options.flag("from-start"))) {
+            long lost = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                if (reader.poll(System.out::println) == 0) {
+                    Thread.sleep(10);
+                }
+                if (reader.lost() != lost) {
+                    lost = reader.lost();
+                    System.out.println("Пропущено записей: " + lost);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package detector.shm;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+// Двоичная раскладка файла кольцевого буфера детекций (little-endian).
+//
+// Заголовок, 128 байт:
+//   0  int   magic 'DETR'
+//   4  int   version
+//   8  int   размер записи (64)
+//   12 int   capacity - число записей, степень двойки
+//   16 long  время создания буфера писателем, нс от эпохи (меняется при перезапуске писателя)
+//   64 long  published - число записанных за всё время записей (отдельная строка кэша)
+//
+// Запись n (с нуля) лежит в ячейке n & (capacity - 1), 64 байта:
+//   0  long  stamp: n + 1, когда запись готова; -1, пока писатель её перезаписывает
+//   8  long  время захвата кадра, нс от эпохи
+//   16 long  номер кадра в потоке
+//   24 int   id потока
+//   28 int   индекс класса
+//   32 float оценка
+//   36 float x, 40 float y, 44 float w, 48 float h - рамка в пикселях кадра (левый верхний угол)
+//   52 int   id объекта трекера (0 - без трекера)
+//   56 int   номер детекции в кадре
+//   60 int   число детекций в кадре
+final class RingLayout {
+    static final int MAGIC = 0x52544544;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 128;
+    static final int RECORD_SIZE = 64;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int RECORD_SIZE_OFFSET = 8;
+    static final int CAPACITY_OFFSET = 12;
+    static final int CREATED_OFFSET = 16;
+    static final int PUBLISHED_OFFSET = 64;
+
+    static final int STAMP = 0;
+    static final int TIMESTAMP = 8;
+    static final int FRAME = 16;
+    static final int STREAM = 24;
+    static final int CLASS_ID = 28;
+    static final int SCORE = 32;
+    static final int X = 36;
+    static final int Y = 40;
+    static final int W = 44;
+    static final int H = 48;
+    static final int TRACK_ID = 52;
+    static final int INDEX = 56;
+    static final int COUNT = 60;
+
+    // Доступ к long в отображённом файле с барьерами памяти (смещения выровнены на 8).
+    static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private RingLayout() {
+    }
+
+    static long fileSize(int capacity) {
+        return HEADER_SIZE + (long) capacity * RECORD_SIZE;
+    }
+
+    static int recordOffset(long sequence, int capacity) {
+        return HEADER_SIZE + (int) (sequence & (capacity - 1)) * RECORD_SIZE;
+    }
+}
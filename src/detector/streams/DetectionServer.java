@@ -0,0 +1,210 @@
+package detector.streams;
+
+import detector.FrameDetector;
+import detector.Overlay;
+import detector.model.Model;
+import detector.model.ModelRegistry;
+import detector.model.ModelSwitch;
+import detector.pipeline.FrameTask;
+import detector.pipeline.PipelineConfig;
+import detector.shm.DetectionRing;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Обработка нескольких видеопотоков пулом сетей.
+// Сеть не потокобезопасна, поэтому у каждого рабочего потока своя сеть;
+// кадры раздаются рабочим потокам через FairScheduler.
+// Модель можно сменить на ходу (swapModel): экземпляры новой модели для всех рабочих потоков
+// загружаются и прогреваются в фоне, а каждый поток переходит на свой экземпляр между кадрами.
+public class DetectionServer implements ModelSwitch {
+    private final List<VideoStream> streams;
+    private final FairScheduler scheduler;
+    private final List<Thread> threads = new ArrayList<>();
+    private final List<Worker> workers = new ArrayList<>();
+    // Буфер для публикации детекций всех потоков (может отсутствовать).
+    private final DetectionRing ring;
+    private final ModelRegistry registry;
+    private final PipelineConfig config;
+    // Модель, на которую переключены (или переключаются) рабочие потоки.
+    private volatile Model active;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "model-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Рабочий поток со своим экземпляром модели.
+    private class Worker {
+        private Model model;
+        private FrameDetector detector;
+        // Экземпляр новой модели, на который поток перейдёт перед следующим кадром. Поток и
+        // загрузчик забирают и подменяют его атомарно (getAndSet), поэтому экземпляр, который
+        // поток уже взял, загрузчик не вернёт в реестр, а новый не будет затёрт.
+        private final AtomicReference<Model> next = new AtomicReference<>();
+
+        Worker(Model model) {
+            use(model);
+        }
+
+        private void use(Model model) {
+            this.model = model;
+            this.detector = new FrameDetector(model.network, model.outputNames, model.geometry,
+                    config.minProbability, config.threshold, config.perClassNms);
+        }
+
+        // Переходит на новую модель, если она готова; прежняя возвращается в реестр.
+        void switchModel() {
+            Model ready = next.getAndSet(null);
+            if (ready != null) {
+                registry.release(model);
+                use(ready);
+            }
+        }
+    }
+
+    // Каждому экземпляру модели из models (одной и той же) соответствует один рабочий поток.
+    public DetectionServer(List<VideoStream> streams, ModelRegistry registry, List<Model> models,
+                           PipelineConfig config) throws IOException {
+        this.streams = streams;
+        this.registry = registry;
+        this.config = config;
+        this.active = models.get(0);
+        this.ring = config.publishPath != null
+                ? new DetectionRing(Paths.get(config.publishPath), config.publishCapacity)
+                : null;
+        this.scheduler = new FairScheduler(streams);
+        for (int i = 0; i < models.size(); i++) {
+            Worker worker = new Worker(models.get(i));
+            workers.add(worker);
+            Thread thread = new Thread(() -> work(worker), "net-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+    }
+
+    @Override
+    public Model model() {
+        return active;
+    }
+
+    @Override
+    public CompletableFuture<Model> swapModel(String name) {
+        registry.spec(name);
+        return CompletableFuture.supplyAsync(() -> {
+            if (active.name().equals(name)) {
+                return active;
+            }
+            List<Model> models = new ArrayList<>();
+            for (int i = 0; i < workers.size(); i++) {
+                models.add(registry.acquire(name));
+            }
+            for (int i = 0; i < workers.size(); i++) {
+                Model pending = workers.get(i).next.getAndSet(models.get(i));
+                // Предыдущая смена, которую поток ещё не подхватил, отменяется.
+                if (pending != null) {
+                    registry.release(pending);
+                }
+            }
+            active = models.get(0);
+            return active;
+        }, loader);
+    }
+
+    public void start() {
+        for (VideoStream stream : streams) {
+            stream.start(scheduler);
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    private void work(Worker worker) {
+        try {
+            VideoStream stream;
+            while ((stream = scheduler.acquire()) != null) {
+                FrameTask task = stream.queue.poll(0, TimeUnit.MILLISECONDS);
+                try {
+                    if (task != null) {
+                        worker.switchModel();
+                        process(stream, task, worker.detector, worker.model);
+                    }
+                } finally {
+                    scheduler.release(stream);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process(VideoStream stream, FrameTask task, FrameDetector detector, Model model) {
+        try {
+            int[] kept = detector.detect(task.frame);
+            if (ring != null) {
+                ring.publish(stream.id(), task.sequence, ring.epochNanos(task.capturedNanos),
+                        detector.detections(), kept);
+            }
+            Overlay.draw(task.frame, detector.detections(), kept, model.labels, model.colors);
+            stream.sink.show(task.frame);
+            stream.completed(task);
+        } catch (Exception e) {
+            e.printStackTrace();
+            stream.failed();
+        } finally {
+            task.release();
+        }
+    }
+
+    // Ждёт завершения не дольше timeoutMillis; возвращает true, если все потоки обработаны.
+    public boolean awaitCompletion(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Thread thread : threads) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                return false;
+            }
+            thread.join(left);
+            if (thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void stop() throws InterruptedException, IOException {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        loader.shutdownNow();
+        for (VideoStream stream : streams) {
+            stream.stop();
+        }
+        if (ring != null) {
+            ring.close();
+        }
+    }
+
+    public List<VideoStream> streams() {
+        return streams;
+    }
+
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (VideoStream stream : streams) {
+            sb.append(stream.report()).append(System.lineSeparator());
+        }
+        return sb.toString().trim();
+    }
+}
@@ -0,0 +1,54 @@
+package detector.streams;
+
+import java.util.List;
+
+// Раздаёт кадры свободным сетям по кругу между потоками.
+// За один обход каждый поток получает не больше одного кадра, и у потока не бывает
+// двух кадров в обработке одновременно, поэтому быстрый поток не может занять
+// все сети, а кадры одного потока выводятся по порядку.
+class FairScheduler {
+    private final List<VideoStream> streams;
+    private int cursor;
+
+    FairScheduler(List<VideoStream> streams) {
+        this.streams = streams;
+    }
+
+    // Ждёт поток со свободным кадром и помечает его занятым.
+    // Возвращает null, когда все потоки закончились.
+    synchronized VideoStream acquire() throws InterruptedException {
+        while (true) {
+            boolean alive = false;
+            for (int i = 0; i < streams.size(); i++) {
+                int index = (cursor + i) % streams.size();
+                VideoStream stream = streams.get(index);
+                if (stream.busy) {
+                    alive = true;
+                    continue;
+                }
+                // Признак конца читаем до проверки очереди, чтобы не потерять последний кадр.
+                boolean ended = stream.ended();
+                if (stream.queue.depth() > 0) {
+                    stream.busy = true;
+                    cursor = index + 1;
+                    return stream;
+                }
+                alive |= !ended;
+            }
+            if (!alive) {
+                return null;
+            }
+            wait();
+        }
+    }
+
+    synchronized void release(VideoStream stream) {
+        stream.busy = false;
+        notifyAll();
+    }
+
+    // Вызывается потоками захвата, когда появился новый кадр или поток закончился.
+    synchronized void signal() {
+        notifyAll();
+    }
+}
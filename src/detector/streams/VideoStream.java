@@ -0,0 +1,137 @@
+package detector.streams;
+
+import detector.display.FrameSink;
+import detector.metrics.LatencyHistogram;
+import detector.pipeline.FrameTask;
+import detector.pipeline.FrameTaskPool;
+import detector.pipeline.OverflowPolicy;
+import detector.pipeline.StageQueue;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Один видеопоток многопоточного сервера: свой поток захвата, маленькая очередь
+// кадров и статистика. Очередь камеры хранит последние кадры (старые выбрасываются),
+// очередь файла с политикой BLOCK останавливает чтение, пока кадры не обработаны.
+public class VideoStream {
+    final int id;
+    final String source;
+    final FrameSink sink;
+    final StageQueue<FrameTask> queue;
+    // Кадры в очереди, кадр в захвате и кадр в обработке.
+    private final FrameTaskPool pool;
+    final LatencyHistogram latency = new LatencyHistogram();
+    private final VideoCapture cap;
+    private final boolean realtime;
+    private final AtomicLong captured = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean ended;
+    private Thread thread;
+    private long startNanos;
+
+    // Занят ли поток обработкой кадра; защищено монитором FairScheduler.
+    boolean busy;
+
+    // Если realtime, файл читается со своей частотой кадров, как камера.
+    public VideoStream(int id, String source, VideoCapture cap, FrameSink sink, int queueCapacity,
+                       OverflowPolicy policy, boolean realtime) {
+        this.id = id;
+        this.source = source;
+        this.cap = cap;
+        this.sink = sink;
+        this.realtime = realtime;
+        this.queue = new StageQueue<>("stream-" + id, queueCapacity, policy, FrameTask::release);
+        this.pool = new FrameTaskPool(queueCapacity + 2);
+    }
+
+    void start(FairScheduler scheduler) {
+        startNanos = System.nanoTime();
+        thread = new Thread(() -> capture(scheduler), "capture-" + id);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void capture(FairScheduler scheduler) {
+        double fps = cap.get(Videoio.CAP_PROP_FPS);
+        long frameNanos = realtime && fps > 0 ? (long) (1e9 / fps) : 0;
+        long next = System.nanoTime();
+        long sequence = 0;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                FrameTask task = pool.acquire(sequence++);
+                if (!cap.read(task.frame)) {
+                    task.release();
+                    break;
+                }
+                captured.incrementAndGet();
+                queue.put(task);
+                scheduler.signal();
+
+                if (frameNanos > 0) {
+                    next += frameNanos;
+                    long sleep = next - System.nanoTime();
+                    if (sleep > 0) {
+                        Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            ended = true;
+            scheduler.signal();
+        }
+    }
+
+    void completed(FrameTask task) {
+        processed.incrementAndGet();
+        latency.recordNanos(System.nanoTime() - task.capturedNanos);
+    }
+
+    void failed() {
+        failed.incrementAndGet();
+    }
+
+    boolean ended() {
+        return ended;
+    }
+
+    void stop() throws InterruptedException {
+        if (thread != null) {
+            thread.interrupt();
+            thread.join();
+        }
+        queue.clear();
+        cap.release();
+        sink.close();
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public long captured() {
+        return captured.get();
+    }
+
+    public long processed() {
+        return processed.get();
+    }
+
+    // Кадры, выброшенные из очереди, потому что сервер не успевал их обработать.
+    public long dropped() {
+        return queue.dropped();
+    }
+
+    public double fps() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds <= 0 ? 0 : processed.get() / seconds;
+    }
+
+    public String report() {
+        return String.format("stream %d (%s): fps=%.1f captured=%d processed=%d dropped=%d failed=%d latency %s",
+                id, source, fps(), captured(), processed(), dropped(), failed.get(), latency.summary());
+    }
+}